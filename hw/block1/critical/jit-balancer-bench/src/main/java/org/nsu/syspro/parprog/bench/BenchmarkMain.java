@@ -0,0 +1,86 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs JMH benchmarks for every thread count from {@code -Dbench.threads} (default {@code 1,2,4,8,16,32,64,128})
+ * with {@link GCProfiler} enabled and prints a summary: ops/s, p99 latency and allocated bytes per operation for every
+ * strategy and parameter combination.
+ * <br>
+ * All regular JMH command line options are accepted, e.g. {@code -p strategy=SOLUTION -p costs=ZERO}.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        final CommandLineOptions cmd = new CommandLineOptions(args);
+        final String threadCounts = System.getProperty("bench.threads", "1,2,4,8,16,32,64,128");
+
+        final List<RunResult> results = new ArrayList<>();
+        for (String t : threadCounts.split(",")) {
+            final ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(cmd)
+                    .threads(Integer.parseInt(t.trim()))
+                    .addProfiler(GCProfiler.class);
+            if (cmd.getIncludes().isEmpty()) {
+                options.include(ExecuteMethodBenchmark.class.getSimpleName());
+            }
+            results.addAll(new Runner(options.build()).run());
+        }
+
+        System.out.println(summary(results));
+    }
+
+    static String summary(Collection<RunResult> results) {
+        // key: parameters without benchmark mode, value: [ops/s, p99 ns, bytes/op]
+        final Map<String, double[]> rows = new TreeMap<>();
+        for (RunResult r : results) {
+            final BenchmarkParams params = r.getParams();
+            final String key = String.format("threads=%3d %s", params.getThreads(), paramsOf(params));
+            final double[] row = rows.computeIfAbsent(key, k -> new double[]{Double.NaN, Double.NaN, Double.NaN});
+            final Result<?> primary = r.getPrimaryResult();
+            if (params.getBenchmark().endsWith(".throughput")) {
+                row[0] = primary.getScore();
+            } else {
+                row[1] = primary.getStatistics().getPercentile(99);
+            }
+            final Result<?> alloc = r.getSecondaryResults().get("gc.alloc.rate.norm");
+            if (alloc != null) {
+                row[2] = alloc.getScore();
+            }
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-90s %15s %12s %12s%n", "configuration", "ops/s", "p99, ns", "bytes/op"));
+        for (Map.Entry<String, double[]> e : rows.entrySet()) {
+            final double[] row = e.getValue();
+            sb.append(String.format("%-90s %15.0f %12.0f %12.2f%n", e.getKey(), row[0], row[1], row[2]));
+        }
+        return sb.toString();
+    }
+
+    private static String paramsOf(BenchmarkParams params) {
+        final StringBuilder sb = new StringBuilder();
+        for (String key : params.getParamsKeys()) {
+            sb.append(key).append('=').append(params.getParam(key)).append(' ');
+        }
+        return sb.toString().trim();
+    }
+}
@@ -0,0 +1,93 @@
+package org.nsu.syspro.parprog.bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * Shape of the top-level call stream of a {@link Workload}. Hot sets of {@link #PHASE_SHIFT} and {@link #BURSTY} depend
+ * only on the position in the stream, so all threads agree on what is hot at the same time.
+ */
+public enum CallPattern {
+    UNIFORM {
+        @Override
+        int[] generate(int methods, int length, long seed) {
+            return Skew.UNIFORM.sample(methods, length, seed);
+        }
+    },
+    /**
+     * Stable Zipf distribution, see {@link Skew#ZIPF}.
+     */
+    ZIPF {
+        @Override
+        int[] generate(int methods, int length, long seed) {
+            return Skew.ZIPF.sample(methods, length, seed);
+        }
+    },
+    /**
+     * Zipf distribution whose ranking is reshuffled every {@link #PHASE_CALLS} calls: yesterday's hot methods go
+     * cold, unknown ones become hot.
+     */
+    PHASE_SHIFT {
+        @Override
+        int[] generate(int methods, int length, long seed) {
+            final int[] result = Skew.ZIPF.sample(methods, length, seed);
+            int[] ranking = null;
+            for (int i = 0; i < length; i++) {
+                if (i % PHASE_CALLS == 0) {
+                    ranking = permutation(methods, PHASE_SEED + i / PHASE_CALLS);
+                }
+                result[i] = ranking[result[i]];
+            }
+            return result;
+        }
+    },
+    /**
+     * Uniform background traffic interrupted every {@link #BURST_PERIOD} calls by a burst of {@link #BURST_CALLS}
+     * calls, {@link #BURST_SHARE} of which go to a small hot set of {@link #BURST_METHODS} random methods.
+     */
+    BURSTY {
+        @Override
+        int[] generate(int methods, int length, long seed) {
+            final int[] result = Skew.UNIFORM.sample(methods, length, seed);
+            final SplittableRandom random = new SplittableRandom(seed);
+            int[] hotSet = null;
+            for (int i = 0; i < length; i++) {
+                if (i % BURST_PERIOD == 0) {
+                    hotSet = permutation(methods, BURST_SEED + i / BURST_PERIOD);
+                }
+                if (i % BURST_PERIOD < BURST_CALLS && random.nextDouble() < BURST_SHARE) {
+                    result[i] = hotSet[random.nextInt(Math.min(methods, BURST_METHODS))];
+                }
+            }
+            return result;
+        }
+    };
+
+    static final int PHASE_CALLS = 1 << 16;
+    static final int BURST_PERIOD = 1 << 16;
+    static final int BURST_CALLS = 1 << 12;
+    static final int BURST_METHODS = 16;
+    static final double BURST_SHARE = 0.9;
+
+    private static final long PHASE_SEED = 0x5EED_0000L;
+    private static final long BURST_SEED = 0xB0057_0000L;
+
+    /**
+     * @return {@code length} method indices in {@code [0, methods)}
+     */
+    abstract int[] generate(int methods, int length, long seed);
+
+    private static int[] permutation(int n, long seed) {
+        final int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = i;
+        }
+        final SplittableRandom random = new SplittableRandom(seed);
+        for (int i = n - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int t = result[i];
+            result[i] = result[j];
+            result[j] = t;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,73 @@
+package org.nsu.syspro.parprog.bench;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Top-level {@code executeMethod} calls of several threads: {@code calls(t)} is the sequence of method ids invoked by
+ * thread {@code t}. Nested calls are not part of the trace, they are reproduced by the payloads of the methods.
+ * <br>
+ * File format (big-endian): {@code int MAGIC | int VERSION | int threads | threads * (int length | length * long id)}.
+ */
+public final class CallTrace {
+
+    static final int MAGIC = 0x4A495452; // "JITR"
+    static final int VERSION = 1;
+
+    private final long[][] calls;
+
+    CallTrace(long[][] calls) {
+        this.calls = calls;
+    }
+
+    public int threads() {
+        return calls.length;
+    }
+
+    public long[] calls(int thread) {
+        return calls[thread];
+    }
+
+    public long totalCalls() {
+        long total = 0;
+        for (long[] c : calls) {
+            total += c.length;
+        }
+        return total;
+    }
+
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(calls.length);
+            for (long[] thread : calls) {
+                out.writeInt(thread.length);
+                for (long id : thread) {
+                    out.writeLong(id);
+                }
+            }
+        }
+    }
+
+    public static CallTrace read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a call trace: " + file);
+            }
+            final int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported call trace version " + version + ", expected " + VERSION + ": " + file);
+            }
+            final long[][] calls = new long[in.readInt()][];
+            for (int t = 0; t < calls.length; t++) {
+                calls[t] = new long[in.readInt()];
+                for (int i = 0; i < calls[t].length; i++) {
+                    calls[t][i] = in.readLong();
+                }
+            }
+            return new CallTrace(calls);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.nsu.syspro.parprog.bench;
+
+/**
+ * Cost profiles of stub engines, all durations are in nanoseconds and are burnt by busy-waiting, so they consume CPU
+ * like real interpretation/compilation would.
+ */
+public enum Costs {
+    /**
+     * Everything is free: measures pure overhead of the strategy itself, like {@code MediumTest}.
+     */
+    ZERO(0, 0, 0, 0, 0),
+    /**
+     * Interpreter is 20x slower than L2 code, compilation is relatively cheap.
+     */
+    BALANCED(200, 50, 10, 100_000, 10_000_000),
+    /**
+     * Compilation is orders of magnitude more expensive than execution, like {@code HardTest}.
+     */
+    COMPILE_HEAVY(50, 20, 10, 10_000_000, 100_000_000);
+
+    public final long interpret;
+    public final long l1Exec;
+    public final long l2Exec;
+    public final long l1Compile;
+    public final long l2Compile;
+
+    Costs(long interpret, long l1Exec, long l2Exec, long l1Compile, long l2Compile) {
+        this.interpret = interpret;
+        this.l1Exec = l1Exec;
+        this.l2Exec = l2Exec;
+        this.l1Compile = l1Compile;
+        this.l2Compile = l2Compile;
+    }
+
+    static void burn(long nanos) {
+        if (nanos == 0) {
+            return;
+        }
+        final long start = System.nanoTime();
+        while (System.nanoTime() - start < nanos) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.UserThread;
+import org.nsu.syspro.parprog.external.ExecutionResult;
+import org.nsu.syspro.parprog.external.MethodID;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of {@link UserThread#executeMethod} for different {@link Strategy strategies}.
+ * <br>
+ * Every benchmark thread owns its own (never started) {@link UserThread} and replays a pre-generated call sequence
+ * over a shared method set, so the measured code is exactly the strategy plus stub engines. Number of threads is set
+ * by JMH ({@code -t}), see {@link BenchmarkMain} for the sweep over 1..128 threads.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecuteMethodBenchmark {
+
+    // must be a power of two
+    static final int CALLS = 1 << 16;
+
+    @Param({"INTERPRETER", "ADAPTIVE", "CACHING_TOP_TIER", "SOLUTION"})
+    public Strategy strategy;
+
+    @Param({"1", "50", "10000"})
+    public int methods;
+
+    @Param({"UNIFORM", "ZIPF"})
+    public Skew skew;
+
+    @Param({"ZERO", "BALANCED"})
+    public Costs costs;
+
+    @Param({"3"})
+    public int compilationThreadBound;
+
+    StubExecutionEngine exec;
+    StubCompilationEngine compiler;
+    StubMethod[] methodSet;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        exec = new StubExecutionEngine(costs);
+        compiler = new StubCompilationEngine(costs);
+        methodSet = StubMethod.many(methods);
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        UserThread thread;
+        StubMethod[] methodSet;
+        int[] calls;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setup(ExecuteMethodBenchmark benchmark, ThreadParams params) {
+            thread = benchmark.strategy.create(benchmark.compilationThreadBound, benchmark.exec, benchmark.compiler);
+            methodSet = benchmark.methodSet;
+            calls = benchmark.skew.sample(benchmark.methods, CALLS, params.getThreadIndex());
+        }
+
+        MethodID next() {
+            final int i = cursor;
+            cursor = (i + 1) & (CALLS - 1);
+            return methodSet[calls[i]];
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public ExecutionResult throughput(Caller caller) {
+        return caller.thread.executeMethod(caller.next());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public ExecutionResult latency(Caller caller) {
+        return caller.thread.executeMethod(caller.next());
+    }
+}
@@ -0,0 +1,121 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.UserThread;
+import org.nsu.syspro.parprog.UserThreadLauncher;
+import org.nsu.syspro.parprog.external.ExecutionEngine;
+import org.nsu.syspro.parprog.external.MethodID;
+import org.nsu.syspro.parprog.solution.CodeCache;
+import org.nsu.syspro.parprog.solution.JitRuntime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Replays a {@link CallTrace} on a {@link Workload} at full speed: one started {@link UserThread} of the given
+ * {@link Strategy} per trace thread, every thread issues its calls back to back, without pauses of the original run.
+ * <br>
+ * Every replay uses fresh {@link WorkloadEngine} (and so fresh {@link JitRuntime} with its own {@link CodeCache}), so
+ * replays of the same trace are independent and comparable.
+ * <br>
+ * User threads are platform threads by default, or carried by any other {@link UserThreadLauncher}.
+ */
+public final class Replayer {
+
+    public static final class Result {
+        public final Strategy strategy;
+        public final int threads;
+        public final long calls;
+        public final long elapsedNanos;
+        public final long l1Compilations;
+        public final long l2Compilations;
+
+        Result(Strategy strategy, int threads, long calls, long elapsedNanos, long l1Compilations, long l2Compilations) {
+            this.strategy = strategy;
+            this.threads = threads;
+            this.calls = calls;
+            this.elapsedNanos = elapsedNanos;
+            this.l1Compilations = l1Compilations;
+            this.l2Compilations = l2Compilations;
+        }
+
+        public double callsPerSecond() {
+            return calls * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-18s threads=%3d calls=%10d time=%8.1fms calls/s=%14.0f compile_l1=%6d compile_l2=%6d",
+                    strategy, threads, calls, elapsedNanos / 1e6, callsPerSecond(), l1Compilations, l2Compilations);
+        }
+    }
+
+    private Replayer() {
+    }
+
+    /**
+     * @param recorder records top-level calls of this replay, or {@code null}
+     */
+    public static Result replay(Strategy strategy, int compilationThreadBound, Workload workload, CallTrace trace,
+                                TraceRecorder recorder) throws InterruptedException {
+        return replay(strategy, compilationThreadBound, workload, trace, recorder, UserThreadLauncher.platform());
+    }
+
+    /**
+     * @param recorder records top-level calls of this replay, or {@code null}
+     * @param launcher starts user threads
+     */
+    public static Result replay(Strategy strategy, int compilationThreadBound, Workload workload, CallTrace trace,
+                                TraceRecorder recorder, UserThreadLauncher launcher) throws InterruptedException {
+        final WorkloadEngine engine = new WorkloadEngine();
+        final ExecutionEngine exec = (recorder == null) ? engine : recorder.wrap(engine);
+        JitRuntime.forEngine(engine, compilationThreadBound, new CodeCache());
+
+        final int n = trace.threads();
+        final CountDownLatch ready = new CountDownLatch(n);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < n; t++) {
+            final MethodID[] calls = resolve(workload, trace.calls(t));
+            final UserThread thread = strategy.create(compilationThreadBound, exec, engine, () -> {
+                final UserThread self = UserThread.current();
+                ready.countDown();
+                try {
+                    start.await();
+                    for (MethodID m : calls) {
+                        self.executeMethod(m);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads.add(launcher.launch(thread));
+        }
+
+        ready.await();
+        final long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        final long elapsed = System.nanoTime() - begin;
+
+        if (failure.get() != null) {
+            throw new IllegalStateException("Replay failed in " + strategy, failure.get());
+        }
+        return new Result(strategy, n, trace.totalCalls(), elapsed, engine.l1Compilations.get(), engine.l2Compilations.get());
+    }
+
+    private static MethodID[] resolve(Workload workload, long[] ids) {
+        final MethodID[] result = new MethodID[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = workload.method(ids[i]);
+            if (result[i] == null) {
+                throw new IllegalArgumentException("MethodID(" + ids[i] + ") does not belong to the workload of " + workload.size() + " methods");
+            }
+        }
+        return result;
+    }
+}
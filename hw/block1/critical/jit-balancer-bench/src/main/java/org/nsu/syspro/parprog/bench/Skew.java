@@ -0,0 +1,50 @@
+package org.nsu.syspro.parprog.bench;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Distribution of calls over the method set.
+ */
+public enum Skew {
+    UNIFORM {
+        @Override
+        int[] sample(int methods, int length, long seed) {
+            final SplittableRandom random = new SplittableRandom(seed);
+            final int[] result = new int[length];
+            for (int i = 0; i < length; i++) {
+                result[i] = random.nextInt(methods);
+            }
+            return result;
+        }
+    },
+    /**
+     * Zipf distribution with exponent {@code 1}: {@code k}-th most popular method is invoked {@code k} times less
+     * often than the most popular one.
+     */
+    ZIPF {
+        @Override
+        int[] sample(int methods, int length, long seed) {
+            final double[] cdf = new double[methods];
+            double sum = 0;
+            for (int k = 0; k < methods; k++) {
+                sum += 1.0 / (k + 1);
+                cdf[k] = sum;
+            }
+            final SplittableRandom random = new SplittableRandom(seed);
+            final int[] result = new int[length];
+            for (int i = 0; i < length; i++) {
+                final int pos = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+                result[i] = Math.min(methods - 1, (pos >= 0) ? pos : -pos - 1);
+            }
+            return result;
+        }
+    };
+
+    /**
+     * Pre-generates a call sequence, so random number generation is not measured by benchmarks.
+     *
+     * @return {@code length} indices in {@code [0, methods)}
+     */
+    abstract int[] sample(int methods, int length, long seed);
+}
@@ -0,0 +1,52 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.UserThread;
+import org.nsu.syspro.parprog.examples.AdaptiveCompiler;
+import org.nsu.syspro.parprog.examples.CachingTopTierJIT;
+import org.nsu.syspro.parprog.examples.Interpreter;
+import org.nsu.syspro.parprog.external.CompilationEngine;
+import org.nsu.syspro.parprog.external.ExecutionEngine;
+import org.nsu.syspro.parprog.solution.SolutionThread;
+
+/**
+ * {@link UserThread} implementations under comparison.
+ */
+public enum Strategy {
+    INTERPRETER {
+        @Override
+        UserThread create(int bound, ExecutionEngine exec, CompilationEngine compiler, Runnable r) {
+            return new Interpreter(bound, exec, compiler, r);
+        }
+    },
+    ADAPTIVE {
+        @Override
+        UserThread create(int bound, ExecutionEngine exec, CompilationEngine compiler, Runnable r) {
+            return new AdaptiveCompiler(bound, exec, compiler, r);
+        }
+    },
+    CACHING_TOP_TIER {
+        @Override
+        UserThread create(int bound, ExecutionEngine exec, CompilationEngine compiler, Runnable r) {
+            return new CachingTopTierJIT(bound, exec, compiler, r);
+        }
+    },
+    SOLUTION {
+        @Override
+        UserThread create(int bound, ExecutionEngine exec, CompilationEngine compiler, Runnable r) {
+            return new SolutionThread(bound, exec, compiler, r);
+        }
+    };
+
+    /**
+     * Creates a user thread object which is never started: benchmark threads call
+     * {@link UserThread#executeMethod} directly, so every benchmark thread must own its own instance.
+     */
+    UserThread create(int bound, ExecutionEngine exec, CompilationEngine compiler) {
+        return create(bound, exec, compiler, null);
+    }
+
+    /**
+     * Creates a user thread which runs {@code r} once started.
+     */
+    abstract UserThread create(int bound, ExecutionEngine exec, CompilationEngine compiler, Runnable r);
+}
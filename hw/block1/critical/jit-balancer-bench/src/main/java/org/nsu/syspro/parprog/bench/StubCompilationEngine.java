@@ -0,0 +1,50 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.external.CompilationEngine;
+import org.nsu.syspro.parprog.external.CompiledMethod;
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compilation engine which burns configured CPU time and counts compilations.
+ */
+public final class StubCompilationEngine implements CompilationEngine {
+
+    static final class Compiled implements CompiledMethod {
+        final MethodID id;
+        final int level;
+
+        Compiled(MethodID id, int level) {
+            this.id = id;
+            this.level = level;
+        }
+
+        @Override
+        public MethodID id() {
+            return id;
+        }
+    }
+
+    private final Costs costs;
+    public final AtomicLong l1Compilations = new AtomicLong(0);
+    public final AtomicLong l2Compilations = new AtomicLong(0);
+
+    public StubCompilationEngine(Costs costs) {
+        this.costs = costs;
+    }
+
+    @Override
+    public CompiledMethod compile_l1(MethodID method) {
+        l1Compilations.incrementAndGet();
+        Costs.burn(costs.l1Compile);
+        return new Compiled(method, 1);
+    }
+
+    @Override
+    public CompiledMethod compile_l2(MethodID method) {
+        l2Compilations.incrementAndGet();
+        Costs.burn(costs.l2Compile);
+        return new Compiled(method, 2);
+    }
+}
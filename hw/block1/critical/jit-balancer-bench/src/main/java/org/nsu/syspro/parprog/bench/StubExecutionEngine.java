@@ -0,0 +1,42 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.external.CompiledMethod;
+import org.nsu.syspro.parprog.external.ExecutionEngine;
+import org.nsu.syspro.parprog.external.ExecutionResult;
+import org.nsu.syspro.parprog.external.MethodID;
+
+/**
+ * Execution engine which burns configured CPU time and returns shared results, so it does not allocate by itself.
+ */
+public final class StubExecutionEngine implements ExecutionEngine {
+
+    public static final ExecutionResult INTERPRETED = new ExecutionResult() {
+    };
+    public static final ExecutionResult L1_EXECUTED = new ExecutionResult() {
+    };
+    public static final ExecutionResult L2_EXECUTED = new ExecutionResult() {
+    };
+
+    private final Costs costs;
+
+    public StubExecutionEngine(Costs costs) {
+        this.costs = costs;
+    }
+
+    @Override
+    public ExecutionResult interpret(MethodID id) {
+        Costs.burn(costs.interpret);
+        return INTERPRETED;
+    }
+
+    @Override
+    public ExecutionResult execute(CompiledMethod method) {
+        final StubCompilationEngine.Compiled compiled = (StubCompilationEngine.Compiled) method;
+        if (compiled.level == 2) {
+            Costs.burn(costs.l2Exec);
+            return L2_EXECUTED;
+        }
+        Costs.burn(costs.l1Exec);
+        return L1_EXECUTED;
+    }
+}
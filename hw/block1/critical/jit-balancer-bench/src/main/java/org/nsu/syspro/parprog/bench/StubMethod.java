@@ -0,0 +1,40 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Method without payload, ids are dense like in a real VM.
+ */
+public final class StubMethod implements MethodID {
+    private static final AtomicLong idProvider = new AtomicLong(0);
+
+    private final long id;
+
+    private StubMethod(long id) {
+        this.id = id;
+    }
+
+    public static StubMethod of() {
+        return new StubMethod(idProvider.getAndAdd(1));
+    }
+
+    public static StubMethod[] many(int n) {
+        final StubMethod[] result = new StubMethod[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = of();
+        }
+        return result;
+    }
+
+    @Override
+    public long id() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StubMethod(%d)", id);
+    }
+}
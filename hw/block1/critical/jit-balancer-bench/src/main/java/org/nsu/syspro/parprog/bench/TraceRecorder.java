@@ -0,0 +1,88 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.external.CompiledMethod;
+import org.nsu.syspro.parprog.external.ExecutionEngine;
+import org.nsu.syspro.parprog.external.ExecutionResult;
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records real top-level {@code executeMethod} calls of every thread by {@link #wrap wrapping} the
+ * {@link ExecutionEngine}: a call is top-level if the thread is not inside another engine call yet. Works with any
+ * {@link org.nsu.syspro.parprog.UserThread} implementation, since every call ends up in the engine exactly once.
+ * <br>
+ * Recording costs a thread-local lookup and an array store per call, buffers are thread-private.
+ */
+public final class TraceRecorder {
+
+    private static final class Buffer {
+        long[] calls = new long[1024];
+        int size;
+        int depth;
+
+        void add(long id) {
+            if (size == calls.length) {
+                calls = Arrays.copyOf(calls, size * 2);
+            }
+            calls[size++] = id;
+        }
+    }
+
+    private final List<Buffer> buffers = new ArrayList<>();
+    private final ThreadLocal<Buffer> current = ThreadLocal.withInitial(() -> {
+        final Buffer b = new Buffer();
+        synchronized (buffers) {
+            buffers.add(b);
+        }
+        return b;
+    });
+
+    public ExecutionEngine wrap(ExecutionEngine exec) {
+        return new ExecutionEngine() {
+            @Override
+            public ExecutionResult interpret(MethodID id) {
+                final Buffer b = enter(id);
+                try {
+                    return exec.interpret(id);
+                } finally {
+                    b.depth--;
+                }
+            }
+
+            @Override
+            public ExecutionResult execute(CompiledMethod method) {
+                final Buffer b = enter(method.id());
+                try {
+                    return exec.execute(method);
+                } finally {
+                    b.depth--;
+                }
+            }
+        };
+    }
+
+    /**
+     * @return calls recorded so far, threads in order of their first call; must not race with recording threads
+     */
+    public CallTrace trace() {
+        synchronized (buffers) {
+            final long[][] calls = new long[buffers.size()][];
+            for (int t = 0; t < calls.length; t++) {
+                final Buffer b = buffers.get(t);
+                calls[t] = Arrays.copyOf(b.calls, b.size);
+            }
+            return new CallTrace(calls);
+        }
+    }
+
+    private Buffer enter(MethodID id) {
+        final Buffer b = current.get();
+        if (b.depth++ == 0) {
+            b.add(id.id());
+        }
+        return b;
+    }
+}
@@ -0,0 +1,78 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.UserThread;
+import org.nsu.syspro.parprog.UserThreadLauncher;
+import org.nsu.syspro.parprog.external.MethodID;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Scheduling overhead of platform vs virtual user threads, see {@link UserThreadLauncher}.
+ * <br>
+ * One operation starts {@code users} user threads of {@link Strategy#SOLUTION} and joins all of them. Every user thread
+ * executes {@link #CALLS} methods and parks for {@code blockMicros} after each call, which models a VM hosting many
+ * mostly-blocked threads. Engines cost nothing ({@link Costs#ZERO}), so the score is thread creation, start, park/unpark
+ * and join plus the strategy itself. With {@code blockMicros = 0} the score is pure start/join overhead.
+ * <br>
+ * {@code virtual} requires Java 21 at runtime and jit-balancer built on JDK 21 (its {@code java21} profile), otherwise
+ * the trial fails with {@link UnsupportedOperationException}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserThreadSchedulingBenchmark {
+
+    static final int CALLS = 100;
+
+    @Param({"platform", "virtual"})
+    public String userThreads;
+
+    @Param({"100", "10000"})
+    public int users;
+
+    @Param({"0", "100"})
+    public int blockMicros;
+
+    @Param({"3"})
+    public int compilationThreadBound;
+
+    UserThreadLauncher launcher;
+    StubExecutionEngine exec;
+    StubCompilationEngine compiler;
+    StubMethod[] methodSet;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        launcher = UserThreadLauncher.named(userThreads);
+        exec = new StubExecutionEngine(Costs.ZERO);
+        compiler = new StubCompilationEngine(Costs.ZERO);
+        methodSet = StubMethod.many(CALLS);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Thread[] startAndJoin() throws InterruptedException {
+        final long blockNanos = TimeUnit.MICROSECONDS.toNanos(blockMicros);
+        final Thread[] threads = new Thread[users];
+        for (int i = 0; i < users; i++) {
+            final UserThread thread = Strategy.SOLUTION.create(compilationThreadBound, exec, compiler, () -> {
+                final UserThread self = UserThread.current();
+                for (MethodID m : methodSet) {
+                    self.executeMethod(m);
+                    if (blockNanos > 0) {
+                        LockSupport.parkNanos(blockNanos);
+                    }
+                }
+            });
+            threads[i] = launcher.launch(thread);
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return threads;
+    }
+}
@@ -0,0 +1,81 @@
+package org.nsu.syspro.parprog.bench;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic, fully deterministic (by {@code seed}) workload: a set of {@link WorkloadMethod}s with individual cost
+ * profiles, a call graph between them and top-level call streams of given {@link CallPattern}.
+ * <ul>
+ *     <li> Costs: every method gets the {@link Costs base costs} scaled by a log-normal factor (median {@code 1},
+ *     clipped to {@code [0.1, 10]}), so some methods are cheap and some are heavy both to execute and to compile.
+ *     <li> Call graph: {@code nestedShare} of the methods call from {@code 1} to {@code maxCallees} methods with bigger
+ *     ids (within {@link #CALLEE_WINDOW}), so the graph is acyclic and a call expands into a finite call tree.
+ * </ul>
+ * Method ids are dense and start from {@code 0}, so a {@link CallTrace} recorded on a workload can be replayed on the
+ * same workload generated again.
+ */
+public final class Workload {
+
+    static final int CALLEE_WINDOW = 64;
+    private static final double COST_SIGMA = 0.75;
+
+    public final CallPattern pattern;
+    public final long seed;
+    private final WorkloadMethod[] methods;
+
+    public Workload(int methods, CallPattern pattern, Costs costs, double nestedShare, int maxCallees, long seed) {
+        if (methods < 1 || nestedShare < 0 || nestedShare > 1 || maxCallees < 0) {
+            throw new IllegalArgumentException(String.format("Invalid workload: methods = %d, nestedShare = %f, maxCallees = %d",
+                    methods, nestedShare, maxCallees));
+        }
+        this.pattern = pattern;
+        this.seed = seed;
+        this.methods = new WorkloadMethod[methods];
+
+        final Random gaussian = new Random(seed);
+        for (int i = 0; i < methods; i++) {
+            final double factor = Math.min(10, Math.max(0.1, Math.exp(COST_SIGMA * gaussian.nextGaussian())));
+            this.methods[i] = new WorkloadMethod(i, costs, factor);
+        }
+
+        final SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < methods - 1; i++) {
+            if (maxCallees == 0 || random.nextDouble() >= nestedShare) {
+                continue;
+            }
+            final int window = Math.min(CALLEE_WINDOW, methods - 1 - i);
+            final WorkloadMethod[] callees = new WorkloadMethod[1 + random.nextInt(maxCallees)];
+            for (int c = 0; c < callees.length; c++) {
+                callees[c] = this.methods[i + 1 + random.nextInt(window)];
+            }
+            this.methods[i].callees = callees;
+        }
+    }
+
+    public int size() {
+        return methods.length;
+    }
+
+    /**
+     * @return method with given id or {@code null} if the id does not belong to the workload
+     */
+    public WorkloadMethod method(long id) {
+        return (0 <= id && id < methods.length) ? methods[(int) id] : null;
+    }
+
+    /**
+     * Generates top-level calls for {@code threads} threads, every thread gets its own stream of the same pattern.
+     */
+    public CallTrace calls(int threads, int callsPerThread) {
+        final long[][] calls = new long[threads][];
+        for (int t = 0; t < threads; t++) {
+            final int[] indices = pattern.generate(methods.length, callsPerThread, seed + t);
+            calls[t] = new long[callsPerThread];
+            for (int i = 0; i < callsPerThread; i++) {
+                calls[t][i] = methods[indices[i]].id();
+            }
+        }
+        return new CallTrace(calls);
+    }
+}
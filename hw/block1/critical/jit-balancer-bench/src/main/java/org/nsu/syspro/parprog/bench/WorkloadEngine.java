@@ -0,0 +1,46 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.external.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Execution and compilation engine of {@link WorkloadMethod}s: burns the cost of the method for the given tier and
+ * runs its payload (nested calls).
+ */
+public final class WorkloadEngine implements ExecutionEngine, CompilationEngine {
+
+    public final AtomicLong l1Compilations = new AtomicLong(0);
+    public final AtomicLong l2Compilations = new AtomicLong(0);
+
+    @Override
+    public ExecutionResult interpret(MethodID id) {
+        final WorkloadMethod method = (WorkloadMethod) id;
+        Costs.burn(method.interpret);
+        method.invokePayload();
+        return StubExecutionEngine.INTERPRETED;
+    }
+
+    @Override
+    public ExecutionResult execute(CompiledMethod compiled) {
+        final StubCompilationEngine.Compiled code = (StubCompilationEngine.Compiled) compiled;
+        final WorkloadMethod method = (WorkloadMethod) code.id;
+        Costs.burn((code.level == 2) ? method.l2Exec : method.l1Exec);
+        method.invokePayload();
+        return (code.level == 2) ? StubExecutionEngine.L2_EXECUTED : StubExecutionEngine.L1_EXECUTED;
+    }
+
+    @Override
+    public CompiledMethod compile_l1(MethodID id) {
+        l1Compilations.incrementAndGet();
+        Costs.burn(((WorkloadMethod) id).l1Compile);
+        return new StubCompilationEngine.Compiled(id, 1);
+    }
+
+    @Override
+    public CompiledMethod compile_l2(MethodID id) {
+        l2Compilations.incrementAndGet();
+        Costs.burn(((WorkloadMethod) id).l2Compile);
+        return new StubCompilationEngine.Compiled(id, 2);
+    }
+}
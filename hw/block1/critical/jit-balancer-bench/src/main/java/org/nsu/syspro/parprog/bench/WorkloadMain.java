@@ -0,0 +1,61 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.UserThreadLauncher;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Compares {@link Strategy strategies} on a synthetic {@link Workload} or on a recorded {@link CallTrace}.
+ * Configured by system properties:
+ * <ul>
+ *     <li> {@code workload.methods} (default {@code 10000}), {@code workload.pattern} ({@link CallPattern},
+ *     default {@code ZIPF}), {@code workload.costs} ({@link Costs}, default {@code BALANCED}),
+ *     {@code workload.nested} (share of methods with callees, default {@code 0.1}), {@code workload.callees}
+ *     (max callees, default {@code 2}), {@code workload.seed} (default {@code 42});
+ *     <li> {@code workload.threads} (default {@code 8}) and {@code workload.calls} (top-level calls per thread, default
+ *     {@code 1048576}) of the generated trace;
+ *     <li> {@code workload.strategies} (default {@code ADAPTIVE,SOLUTION}) and {@code workload.bound} (compilation thread
+ *     bound, default {@code 3});
+ *     <li> {@code workload.userThreads}: {@code platform} (default) or {@code virtual} user threads, see
+ *     {@link UserThreadLauncher};
+ *     <li> {@code workload.replay}: file to replay instead of the generated trace, it must have been recorded on the
+ *     same workload parameters;
+ *     <li> {@code workload.record}: file to save the calls of the first replay to.
+ * </ul>
+ * Example: {@code java -Dworkload.pattern=PHASE_SHIFT -cp target/benchmarks.jar org.nsu.syspro.parprog.bench.WorkloadMain}
+ */
+public final class WorkloadMain {
+
+    private WorkloadMain() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final Workload workload = new Workload(
+                Integer.getInteger("workload.methods", 10_000),
+                CallPattern.valueOf(System.getProperty("workload.pattern", "ZIPF")),
+                Costs.valueOf(System.getProperty("workload.costs", "BALANCED")),
+                Double.parseDouble(System.getProperty("workload.nested", "0.1")),
+                Integer.getInteger("workload.callees", 2),
+                Long.getLong("workload.seed", 42L));
+
+        final String replay = System.getProperty("workload.replay");
+        final CallTrace trace = (replay != null)
+                ? CallTrace.read(Path.of(replay))
+                : workload.calls(Integer.getInteger("workload.threads", 8), Integer.getInteger("workload.calls", 1 << 20));
+
+        final String record = System.getProperty("workload.record");
+        final int bound = Integer.getInteger("workload.bound", 3);
+        final UserThreadLauncher launcher = UserThreadLauncher.named(System.getProperty("workload.userThreads", "platform"));
+        boolean first = true;
+        for (String s : System.getProperty("workload.strategies", "ADAPTIVE,SOLUTION").split(",")) {
+            final TraceRecorder recorder = (first && record != null) ? new TraceRecorder() : null;
+            final Replayer.Result result = Replayer.replay(Strategy.valueOf(s.trim()), bound, workload, trace, recorder, launcher);
+            System.out.println(result);
+            if (recorder != null) {
+                recorder.trace().write(Path.of(record));
+            }
+            first = false;
+        }
+    }
+}
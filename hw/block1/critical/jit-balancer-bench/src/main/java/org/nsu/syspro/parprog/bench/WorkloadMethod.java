@@ -0,0 +1,60 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.UserThread;
+import org.nsu.syspro.parprog.external.MethodID;
+
+/**
+ * Method of a synthetic {@link Workload}, the benchmark counterpart of {@code TestMethod}: it has its own cost profile
+ * (burnt by {@link WorkloadEngine}) and a payload which invokes its callees through
+ * {@link UserThread#executeMethod}, like a real method calling other methods.
+ */
+public final class WorkloadMethod implements MethodID {
+
+    private static final WorkloadMethod[] NO_CALLEES = new WorkloadMethod[0];
+
+    private final long id;
+    final long interpret;
+    final long l1Exec;
+    final long l2Exec;
+    final long l1Compile;
+    final long l2Compile;
+
+    // set once by Workload before any invocation, callees always have bigger ids, so the call graph is acyclic
+    WorkloadMethod[] callees = NO_CALLEES;
+
+    WorkloadMethod(long id, Costs base, double factor) {
+        this.id = id;
+        this.interpret = Math.round(base.interpret * factor);
+        this.l1Exec = Math.round(base.l1Exec * factor);
+        this.l2Exec = Math.round(base.l2Exec * factor);
+        this.l1Compile = Math.round(base.l1Compile * factor);
+        this.l2Compile = Math.round(base.l2Compile * factor);
+    }
+
+    /**
+     * Invokes callees in the current {@link UserThread}.
+     */
+    void invokePayload() {
+        if (callees.length == 0) {
+            return;
+        }
+        final UserThread thread = UserThread.current();
+        for (WorkloadMethod callee : callees) {
+            thread.executeMethod(callee);
+        }
+    }
+
+    public int callees() {
+        return callees.length;
+    }
+
+    @Override
+    public long id() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WorkloadMethod(%d)", id);
+    }
+}
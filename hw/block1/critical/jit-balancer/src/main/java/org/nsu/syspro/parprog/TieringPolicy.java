@@ -0,0 +1,84 @@
+package org.nsu.syspro.parprog;
+
+import org.nsu.syspro.parprog.external.MethodID;
+
+/**
+ * Decides which JIT level a method deserves, given its profile.
+ * <br>
+ * {@link UserThread} implementation asks the policy on every invocation which is not served by the best possible code
+ * and requests compilation if the returned {@link Tier} is higher than the one already available. The policy only
+ * expresses "it is worth compiling"; correctness constraints (e.g. `Eventual-per-thread-progress-1`) remain the
+ * responsibility of the {@link UserThread} implementation.
+ * <br>
+ * Policies are called on latency-critical path: {@link #decide} must be cheap, must not block and should not allocate.
+ * The same policy instance may be shared by many threads, so it must be thread-safe.
+ * <br>
+ * Built-in policies live in {@code org.nsu.syspro.parprog.solution}: {@code ThresholdTieringPolicy},
+ * {@code RateTieringPolicy}, {@code CostModelTieringPolicy} and {@code L1SkipTieringPolicy} on top of any of them.
+ * See {@code SolutionThread} there for the reference user. This interface depends on nothing but
+ * {@link org.nsu.syspro.parprog.external}, so policies can be written without the solution.
+ */
+public interface TieringPolicy {
+
+    /**
+     * Execution tier, {@link #ordinal()} equals to JIT level ({@code 0} means interpretation).
+     */
+    enum Tier {
+        INTERPRETER, L1, L2;
+
+        private static final Tier[] values = values();
+
+        public int level() {
+            return ordinal();
+        }
+
+        public static Tier ofLevel(int level) {
+            return values[level];
+        }
+    }
+
+    /**
+     * Profile of the method being invoked, as seen by the current thread. Implementations are typically mutable
+     * per-thread objects re-filled before every {@link #decide} call, so a policy must not keep references to it.
+     */
+    interface Profile {
+        /**
+         * @return number of invocations of the method in the current thread, including the current one
+         */
+        long localInvocations();
+
+        /**
+         * @return approximate number of invocations of the method in all threads
+         */
+        long globalInvocations();
+
+        /**
+         * @return best tier which is already available for the method
+         */
+        Tier available();
+
+        /**
+         * @return measured average duration of compilation by given tier, or {@code -1} if nothing was measured yet
+         */
+        long compileNanos(Tier tier);
+
+        /**
+         * @return measured average duration of a single execution at given tier, or {@code -1} if nothing was measured yet
+         */
+        long executeNanos(Tier tier);
+
+        /**
+         * @return recent time a request for compilation by given tier waits in the compile queue before it starts, or
+         * {@code -1} if nothing was measured yet
+         */
+        default long queueNanos(Tier tier) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return tier which is worth having for the {@code method}; returning {@link Profile#available()} or lower tier
+     * means "keep using what we have"
+     */
+    Tier decide(MethodID method, Profile profile);
+}
@@ -22,6 +22,8 @@ import java.util.concurrent.atomic.AtomicLong;
  * Look at {@link Interpreter}, {@link AdaptiveCompiler}, {@link CachingTopTierJIT} for reference.
  * <br>
  * Write your solution in {@link SolutionThread}.
+ * <br>
+ * User thread is either started as a platform thread or executed by a virtual thread, see {@link UserThreadLauncher}.
  */
 public abstract class UserThread extends Thread {
     private static final AtomicLong idProvider = new AtomicLong(0);
@@ -55,6 +57,15 @@ public abstract class UserThread extends Thread {
         return result;
     }
 
+    /**
+     * @return user thread executed by the current Java thread, or {@code null} if it is not executing any (e.g. it is
+     * a compiler thread). Unlike {@code Thread.currentThread() instanceof UserThread} works for
+     * {@link UserThreadLauncher#virtual() virtual} user threads too.
+     */
+    public static UserThread currentOrNull() {
+        return currentUserThread.get();
+    }
+
     public static long firstUnusedThreadNum() {
         return idProvider.get();
     }
@@ -0,0 +1,68 @@
+package org.nsu.syspro.parprog;
+
+/**
+ * Decides which Java thread carries a {@link UserThread}.
+ * <ul>
+ *     <li> {@link #platform()}: the {@link UserThread} itself is started, one platform thread per user thread;
+ *     <li> {@link #virtual()}: {@link UserThread#run()} is executed by a fresh virtual thread (Java 21+). The
+ *     {@link UserThread} object is never started and only serves as identity: {@link UserThread#current()} returns it
+ *     inside the virtual thread, so `Same-thread-correctness` holds as usual.
+ * </ul>
+ * Mode is chosen by system property {@value #PROPERTY} ({@code platform} or {@code virtual}), see {@link #fromSystemProperty()}.
+ * <br>
+ * Compilation is not affected: compiler threads are platform threads owned by the solution and
+ * {@link UserThread#compilationThreadBound} limits them in both modes.
+ * <br>
+ * Weak points: in virtual mode {@code Thread.currentThread() instanceof UserThread} no longer recognizes user threads,
+ * use {@link UserThread#currentOrNull()} instead, and the {@link UserThread} object itself is never alive, join the thread
+ * returned by {@link #launch} instead. Virtual threads are pinned to their carrier while blocked inside
+ * {@code synchronized}, so a solution which blocks on monitors may exhaust the carrier pool.
+ */
+public interface UserThreadLauncher {
+
+    String PROPERTY = "jit.userThreads";
+
+    /**
+     * Starts executing {@link UserThread#run()} of the given thread.
+     *
+     * @return Java thread which runs the user thread, {@link Thread#join() join} it to await completion
+     */
+    Thread launch(UserThread thread);
+
+    static UserThreadLauncher platform() {
+        return thread -> {
+            thread.start();
+            return thread;
+        };
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the module was built without Java 21 profile or runs on older JDK
+     */
+    static UserThreadLauncher virtual() {
+        try {
+            final Class<?> launcher = Class.forName("org.nsu.syspro.parprog.VirtualThreadLauncher");
+            return (UserThreadLauncher) launcher.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new UnsupportedOperationException("Virtual user threads require Java 21 build of jit-balancer", e);
+        }
+    }
+
+    /**
+     * @param mode {@code platform} or {@code virtual}
+     */
+    static UserThreadLauncher named(String mode) {
+        switch (mode) {
+            case "platform":
+                return platform();
+            case "virtual":
+                return virtual();
+            default:
+                throw new IllegalArgumentException("Unknown user thread mode: " + mode);
+        }
+    }
+
+    static UserThreadLauncher fromSystemProperty() {
+        return named(System.getProperty(PROPERTY, "platform"));
+    }
+}
@@ -1,5 +1,7 @@
 package org.nsu.syspro.parprog.external;
 
+import java.util.List;
+
 /**
  * Abstraction of compilation engine of some Virtual Machine featuring Just-In-Time (JIT) compilation.
  * This interface support multi-level (multi-tier) compilation:
@@ -17,9 +19,56 @@ package org.nsu.syspro.parprog.external;
  * <br>
  * You could start as many compilations of the same method as you need, no internal caching will happen. You could treat `compile`
  * methods as idempotent and side effect free.
+ * <br>
+ * Batch versions compile a list of methods by the same level in one call and report every result as soon as it is
+ * ready. Default implementations just compile the methods one by one; engines which can share work between methods
+ * (warm-up storms, common callees) override them.
  */
 public interface CompilationEngine {
     CompiledMethod compile_l1(MethodID method);
 
     CompiledMethod compile_l2(MethodID method);
+
+    /**
+     * Receives results of a batch compilation, in the calling thread, in any order.
+     */
+    interface BatchCallback {
+        void compiled(MethodID method, CompiledMethod code);
+
+        void failed(MethodID method, Throwable error);
+    }
+
+    /**
+     * Compiles every method of the batch by level 1 JIT, exactly one of the {@code callback} methods is called per
+     * method before return.
+     */
+    default void compile_l1(List<? extends MethodID> methods, BatchCallback callback) {
+        for (MethodID method : methods) {
+            final CompiledMethod code;
+            try {
+                code = compile_l1(method);
+            } catch (RuntimeException | Error e) {
+                callback.failed(method, e);
+                continue;
+            }
+            callback.compiled(method, code);
+        }
+    }
+
+    /**
+     * Compiles every method of the batch by level 2 JIT, exactly one of the {@code callback} methods is called per
+     * method before return.
+     */
+    default void compile_l2(List<? extends MethodID> methods, BatchCallback callback) {
+        for (MethodID method : methods) {
+            final CompiledMethod code;
+            try {
+                code = compile_l2(method);
+            } catch (RuntimeException | Error e) {
+                callback.failed(method, e);
+                continue;
+            }
+            callback.compiled(method, code);
+        }
+    }
 }
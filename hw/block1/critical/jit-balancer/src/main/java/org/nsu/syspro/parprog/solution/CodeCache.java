@@ -0,0 +1,537 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.external.CompiledMethod;
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Cache of compiled code keyed by {@link MethodID#id()}, one per {@link JitRuntime}.
+ * <br>
+ * Every method gets at most one {@link Entry} which stores the best {@link CompiledCode} published so far.
+ * Published level only grows (nothing -> L1 -> L2), so any thread that observed some level will never observe
+ * a lower one later: that is how `Per-thread-monotonicity` is kept without any thread-local bookkeeping.
+ * <br>
+ * Design:
+ * <ul>
+ *     <li> {@link #lookup(long)} is lock-free and allocation-free: entries live in a {@link DenseLongTable} indexed
+ *     by method id, so a lookup is two array loads without hashing.
+ *     It is the only operation on the `executeMethod` hot path.
+ *     <li> Writers ({@link #publish}) of unbounded cache are lock-free too: code of an {@link Entry} is replaced by CAS.
+ *     Creation of a new entry is a CAS on its slot as well, only sparse ids (see {@link DenseLongTable}) fall back to
+ *     the hashed table with its insertion lock.
+ *     <li> A reader may miss an entry which is being inserted concurrently. This is just a cache miss: caller
+ *     interprets once more and retries on the next call.
+ *     <li> Every publication which raises the level of some method bumps the {@link #epoch()} after the code is
+ *     visible. User threads keep lower-level code in their {@link InlineCache} and re-validate it only when they see a
+ *     new epoch, so the common path does not look into the shared cache at all.
+ * </ul>
+ * Bounded mode ({@link #CodeCache(int, long, long[])}): the cache keeps at most {@code maxEntries} compiled methods
+ * whose total estimated code size (per-tier {@code tierCost}) does not exceed {@code maxCost}. Eviction is a sampled
+ * LFU with aging, an approximation of W-TinyLFU:
+ * <ul>
+ *     <li> user threads {@link #touch} a method on every sampled execution of its code, so the frequency of a resident
+ *     entry follows the hotness profile of compiled code;
+ *     <li> when a publication overflows the cache, {@link #EVICTION_SAMPLES} random resident entries are inspected and
+ *     the least frequent one loses its code. The {@link #WINDOW_PERCENT} most recently published entries are protected
+ *     (they had no chance to be touched yet), unless every sampled entry is that young;
+ *     <li> all frequencies are halved every {@code maxEntries} publications, so methods that went cold become
+ *     evictable.
+ * </ul>
+ * Evicted method is interpreted again (or executed as previously obtained code) and goes through profiling and tiering
+ * from scratch, so it is recompiled only if it gets hot again, and only within its {@link Entry#COMPILE_BUDGET}: an
+ * evicted L2 method is never compiled by L2 again. Eviction breaks the "level only grows" rule of the shared cache, so
+ * in bounded mode `Per-thread-monotonicity` becomes a duty of the user thread: it has to pin the best code it has ever
+ * executed (see {@link SolutionThread}).
+ * <br>
+ * Weak points: entries for cold methods are kept forever (`Limited-methods` makes this acceptable; in bounded mode an
+ * entry without code costs a few dozens of bytes). All publications of a bounded cache are serialized by one lock.
+ */
+public final class CodeCache {
+
+    /**
+     * Compiled code together with JIT level which produced it. Immutable, safely published through {@link Entry}.
+     */
+    public static final class CompiledCode {
+        public final int level;
+        public final CompiledMethod method;
+
+        CompiledCode(int level, CompiledMethod method) {
+            assert level == 1 || level == 2;
+            this.level = level;
+            this.method = method;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CompiledCode(L%d, %s)", level, method);
+        }
+    }
+
+    /**
+     * Compilation state of a method, derived from its published code and in-flight compilations. Ordered: a method
+     * moves to the right as it gets compiled, and back only when a queued compilation is cancelled or code is evicted.
+     */
+    public enum State {
+        COLD, L1_QUEUED, L1_READY, L2_QUEUED, L2_READY;
+
+        private static final State[] values = values();
+    }
+
+    /**
+     * Per-method slot: best published code, compilations in flight and the {@link State} machine.
+     * <br>
+     * All fields are written by CAS ({@link VarHandle}) only, without locks (except the bounded cache, whose
+     * publications are serialized anyway). Code is written with release semantics and read with acquire semantics, so
+     * a thread which sees the {@link CompiledCode} sees the fully constructed {@link CompiledMethod} too. {@link #code}
+     * only moves to higher levels, unless it is evicted from a bounded cache.
+     * <br>
+     * A compilation of some level is started only by the thread which {@link #claim claimed} the empty flight slot of
+     * that level, which is how {@link SingleFlightCompiler} compiles every {@code (method, level)} at most once while its
+     * code stays in the cache. Eviction forgets the code but not the number of compilations: a level whose
+     * {@link #COMPILE_BUDGET} is used up cannot be claimed anymore (`CPU-bound-compilation`).
+     */
+    public static final class Entry {
+        /**
+         * How many times a method may be compiled by every level, indexed by level.
+         */
+        static final int[] COMPILE_BUDGET = {0, 2, 1};
+
+        private static final VarHandle CODE;
+        private static final VarHandle STATE;
+        private static final VarHandle L1_FLIGHT;
+        private static final VarHandle L2_FLIGHT;
+
+        static {
+            try {
+                final MethodHandles.Lookup lookup = MethodHandles.lookup();
+                CODE = lookup.findVarHandle(Entry.class, "code", CompiledCode.class);
+                STATE = lookup.findVarHandle(Entry.class, "state", int.class);
+                L1_FLIGHT = lookup.findVarHandle(Entry.class, "l1Flight", CompletableFuture.class);
+                L2_FLIGHT = lookup.findVarHandle(Entry.class, "l2Flight", CompletableFuture.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        public final long methodId;
+        private CompiledCode code; // via CODE
+        private int state; // State#ordinal via STATE
+        private CompletableFuture<CompiledMethod> l1Flight; // via L1_FLIGHT
+        private CompletableFuture<CompiledMethod> l2Flight; // via L2_FLIGHT
+        // written by the owner of the flight of the level only, survive eviction
+        private volatile int l1Compilations;
+        private volatile int l2Compilations;
+
+        // bounded mode only
+        private volatile long frequency;
+        private long publishedAt; // guarded by CodeCache#residents
+        private int residentIndex = -1; // guarded by CodeCache#residents
+
+        Entry(long methodId) {
+            this.methodId = methodId;
+        }
+
+        /**
+         * @return best code published for this method, or {@code null} if nothing was published yet
+         */
+        public CompiledCode code() {
+            return (CompiledCode) CODE.getAcquire(this);
+        }
+
+        public int level() {
+            final CompiledCode c = code();
+            return (c == null) ? 0 : c.level;
+        }
+
+        public State state() {
+            return State.values[(int) STATE.getAcquire(this)];
+        }
+
+        /**
+         * @return compilation of given level which is in flight, or {@code null}
+         */
+        @SuppressWarnings("unchecked")
+        CompletableFuture<CompiledMethod> flight(int level) {
+            return (CompletableFuture<CompiledMethod>) flightHandle(level).getAcquire(this);
+        }
+
+        /**
+         * Registers {@code flight} as the only compilation of given level.
+         *
+         * @return {@code false} if another compilation of this level is already in flight, or the level has used up
+         * its {@link #COMPILE_BUDGET}
+         */
+        boolean claim(int level, CompletableFuture<CompiledMethod> flight) {
+            if (!mayCompile(level) || !flightHandle(level).compareAndSet(this, null, flight)) {
+                return false;
+            }
+            // the counter only changes under a claimed flight, so it could not have grown since the check
+            settle();
+            return true;
+        }
+
+        /**
+         * @return {@code true} unless the method was already compiled by given level as many times as
+         * {@link #COMPILE_BUDGET} allows
+         */
+        boolean mayCompile(int level) {
+            return compilations(level) < COMPILE_BUDGET[level];
+        }
+
+        /**
+         * @return number of times the engine was asked to compile the method by given level, evictions included
+         */
+        int compilations(int level) {
+            return (level == 2) ? l2Compilations : l1Compilations;
+        }
+
+        /**
+         * Accounts a compilation which is about to start, called by the owner of the claimed flight of the level.
+         */
+        void compiling(int level) {
+            assert flight(level) != null;
+            if (level == 2) {
+                l2Compilations++;
+            } else {
+                l1Compilations++;
+            }
+        }
+
+        /**
+         * Unregisters finished or cancelled {@code flight}.
+         *
+         * @return {@code false} if it was not registered (e.g. already released)
+         */
+        boolean release(int level, CompletableFuture<CompiledMethod> flight) {
+            if (!flightHandle(level).compareAndSet(this, flight, null)) {
+                return false;
+            }
+            settle();
+            return true;
+        }
+
+        /**
+         * Lock-free publication: replaces current code unless it is of the same or higher level.
+         *
+         * @return code which is visible after the call
+         */
+        CompiledCode publish(CompiledCode candidate) {
+            CompiledCode current = code();
+            while (current == null || current.level < candidate.level) {
+                final CompiledCode witness = (CompiledCode) CODE.compareAndExchangeRelease(this, current, candidate);
+                if (witness == current) {
+                    settle();
+                    return candidate;
+                }
+                current = witness;
+            }
+            return current;
+        }
+
+        private void set(CompiledCode code) {
+            CODE.setRelease(this, code);
+            settle();
+        }
+
+        /**
+         * Moves {@link #state} to the one derived from code and flights. Every writer settles after its write, and a
+         * settler which lost the CAS to a stale value re-derives, so the state converges to the latest writes.
+         */
+        private void settle() {
+            while (true) {
+                final int current = (int) STATE.getAcquire(this);
+                final int derived = derive();
+                if (current == derived) {
+                    return;
+                }
+                if (STATE.compareAndSet(this, current, derived) && derive() == derived) {
+                    return;
+                }
+            }
+        }
+
+        private int derive() {
+            final int level = level();
+            if (level == 2) {
+                return State.L2_READY.ordinal();
+            }
+            if (flight(2) != null) {
+                return State.L2_QUEUED.ordinal();
+            }
+            if (level == 1) {
+                return State.L1_READY.ordinal();
+            }
+            if (flight(1) != null) {
+                return State.L1_QUEUED.ordinal();
+            }
+            return State.COLD.ordinal();
+        }
+
+        private static VarHandle flightHandle(int level) {
+            assert level == 1 || level == 2;
+            return (level == 2) ? L2_FLIGHT : L1_FLIGHT;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    static final int EVICTION_SAMPLES = 8;
+    static final int WINDOW_PERCENT = 1;
+
+    /**
+     * Estimated code size of a compiled method, indexed by level: L2 code is inlined and unrolled, hence bigger.
+     */
+    public static final long[] DEFAULT_TIER_COST = {0, 1, 4};
+
+    private final DenseLongTable<Entry> entries;
+    private final AtomicLong epoch = new AtomicLong(0);
+
+    // bounded mode only
+    private final boolean bounded;
+    private final int maxEntries;
+    private final long maxCost;
+    private final long[] tierCost;
+    private final ArrayList<Entry> residents;
+    private long residentCost; // guarded by residents
+    private long publications; // guarded by residents
+    private long evictions; // guarded by residents
+
+    public CodeCache() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public CodeCache(int initialCapacity) {
+        this.entries = new DenseLongTable<>(initialCapacity, e -> e.methodId);
+        this.bounded = false;
+        this.maxEntries = Integer.MAX_VALUE;
+        this.maxCost = Long.MAX_VALUE;
+        this.tierCost = DEFAULT_TIER_COST;
+        this.residents = null;
+    }
+
+    /**
+     * Creates bounded cache.
+     *
+     * @param maxEntries max number of methods with compiled code
+     * @param maxCost    max sum of {@code tierCost[level]} over all methods with compiled code
+     * @param tierCost   estimated code size of a compiled method, indexed by level ({@code 1} or {@code 2})
+     */
+    public CodeCache(int maxEntries, long maxCost, long[] tierCost) {
+        if (maxEntries < 1 || tierCost.length != 3 || tierCost[1] < 0 || tierCost[2] < 0 || maxCost < Math.max(tierCost[1], tierCost[2])) {
+            throw new IllegalArgumentException("Cache must fit at least one method of every tier: maxEntries = "
+                    + maxEntries + ", maxCost = " + maxCost);
+        }
+        this.entries = new DenseLongTable<>(INITIAL_CAPACITY, e -> e.methodId);
+        this.bounded = true;
+        this.maxEntries = maxEntries;
+        this.maxCost = maxCost;
+        this.tierCost = tierCost.clone();
+        this.residents = new ArrayList<>();
+    }
+
+    /**
+     * Lock-free, allocation-free lookup.
+     *
+     * @return entry of the method or {@code null} if nothing was ever published for it
+     */
+    public Entry lookup(long methodId) {
+        return entries.get(methodId);
+    }
+
+    /**
+     * Lock-free, allocation-free lookup of the best published code.
+     *
+     * @return best code or {@code null}
+     */
+    public CompiledCode code(long methodId) {
+        final Entry e = lookup(methodId);
+        return (e == null) ? null : e.code();
+    }
+
+    /**
+     * @return {@code true} if a request to compile the method by given level would start a compilation: nothing of
+     * that level or better is published, no compilation of that level is in flight and its
+     * {@link Entry#COMPILE_BUDGET} is not used up
+     */
+    public boolean compilable(long methodId, int level) {
+        final Entry e = lookup(methodId);
+        return e == null || (e.level() < level && e.flight(level) == null && e.mayCompile(level));
+    }
+
+    /**
+     * @return entry of the method, created if it does not exist yet
+     */
+    public Entry entry(long methodId) {
+        final Entry e = entries.get(methodId);
+        return (e != null) ? e : entries.computeIfAbsent(methodId, Entry::new);
+    }
+
+    /**
+     * Publishes compiled code of given level unless the same or higher level is already available.
+     *
+     * @return code which is visible in cache after the call (either {@code method} or something better)
+     */
+    public CompiledCode publish(int level, CompiledMethod method) {
+        final CompiledCode candidate = new CompiledCode(level, method);
+        final Entry e = entry(method.id().id());
+        final CompiledCode visible = bounded ? publishBounded(e, candidate) : e.publish(candidate);
+        if (visible == candidate) {
+            epoch.incrementAndGet();
+        }
+        return visible;
+    }
+
+    /**
+     * Number of publications which raised the level of some method. Grows after the published code is visible, so a
+     * thread which has read some epoch observes all code published before it by {@link #code}.
+     * <br>
+     * Evictions of bounded cache do not change the epoch: they never make better code available.
+     */
+    public long epoch() {
+        return epoch.get();
+    }
+
+    /**
+     * Reports an execution of compiled code of the method, feeds eviction policy of bounded cache. Racy increments
+     * may be lost, which is fine for a frequency estimate.
+     */
+    public void touch(long methodId) {
+        if (!bounded) {
+            return;
+        }
+        final Entry e = entries.get(methodId);
+        if (e != null) {
+            e.frequency = e.frequency + 1;
+        }
+    }
+
+    public boolean bounded() {
+        return bounded;
+    }
+
+    /**
+     * Visits all entries, including ones whose code was evicted. Weakly consistent, meant for snapshots.
+     */
+    public void forEach(Consumer<? super Entry> action) {
+        entries.forEach(action);
+    }
+
+    /**
+     * @return number of entries, including ones whose code was evicted
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of methods with compiled code
+     */
+    public int residents() {
+        if (!bounded) {
+            final int[] count = {0};
+            entries.forEach(e -> count[0] += (e.code() != null) ? 1 : 0);
+            return count[0];
+        }
+        synchronized (residents) {
+            return residents.size();
+        }
+    }
+
+    /**
+     * @return total estimated code size of bounded cache
+     */
+    public long residentCost() {
+        assert bounded;
+        synchronized (residents) {
+            return residentCost;
+        }
+    }
+
+    public long evictions() {
+        if (!bounded) {
+            return 0;
+        }
+        synchronized (residents) {
+            return evictions;
+        }
+    }
+
+    private CompiledCode publishBounded(Entry e, CompiledCode candidate) {
+        synchronized (residents) {
+            final CompiledCode current = e.code();
+            if (current != null && current.level >= candidate.level) {
+                return current;
+            }
+            if (current == null) {
+                e.residentIndex = residents.size();
+                residents.add(e);
+            } else {
+                residentCost -= tierCost[current.level];
+            }
+            residentCost += tierCost[candidate.level];
+            e.publishedAt = ++publications;
+            e.set(candidate);
+
+            while ((residents.size() > maxEntries || residentCost > maxCost) && residents.size() > 1) {
+                evict(victim(e));
+            }
+            if (publications % maxEntries == 0) {
+                for (Entry r : residents) {
+                    r.frequency = r.frequency >>> 1;
+                }
+            }
+            return candidate;
+        }
+    }
+
+    private Entry victim(Entry protectedEntry) {
+        assert Thread.holdsLock(residents);
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long windowStart = publications - Math.max(1, (long) maxEntries * WINDOW_PERCENT / 100);
+        Entry coldest = null;
+        Entry oldest = null;
+        for (int i = 0; i < EVICTION_SAMPLES; i++) {
+            final Entry sample = residents.get(random.nextInt(residents.size()));
+            if (sample == protectedEntry) {
+                continue;
+            }
+            if (oldest == null || sample.publishedAt < oldest.publishedAt) {
+                oldest = sample;
+            }
+            if (sample.publishedAt <= windowStart && (coldest == null || sample.frequency < coldest.frequency)) {
+                coldest = sample;
+            }
+        }
+        if (coldest != null) {
+            return coldest;
+        }
+        if (oldest != null) {
+            return oldest;
+        }
+        // only the protected entry was sampled, take any other one
+        final int index = (protectedEntry.residentIndex == 0) ? 1 : 0;
+        return residents.get(index);
+    }
+
+    private void evict(Entry victim) {
+        assert Thread.holdsLock(residents);
+        final int index = victim.residentIndex;
+        final Entry last = residents.remove(residents.size() - 1);
+        if (last != victim) {
+            residents.set(index, last);
+            last.residentIndex = index;
+        }
+        victim.residentIndex = -1;
+        residentCost -= tierCost[victim.level()];
+        victim.set(null);
+        victim.frequency = 0;
+        evictions++;
+    }
+}
@@ -0,0 +1,178 @@
+package org.nsu.syspro.parprog.solution;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * CPU budget of the compiler threads: at most {@code share} of the machine CPU time (all cores) over a sliding
+ * {@code window} may be spent inside {@code compile_l1}/{@code compile_l2}.
+ * <br>
+ * Compiler threads measure their own CPU time around every compilation by {@link ThreadMXBean} (wall time if the JVM
+ * does not support thread CPU time) and {@link #record} it. The window is a ring of {@link #BUCKETS} buckets, a bucket
+ * is recycled when the clock enters it again; {@link #used()} is the sum of the buckets inside the window.
+ * <br>
+ * The budget never switches thread CPU time measurement on, that is a JVM-wide setting: if it is supported but
+ * switched off, the budget cannot be created.
+ * <br>
+ * {@link CompileQueue} consults {@link #exceeded()} before starting a compilation: over budget only urgent requests
+ * (somebody is blocked on them) are started, the rest are deferred until the old buckets leave the window. Deferral
+ * episodes are counted in {@link #deferrals()}.
+ * <br>
+ * Weak points: a compilation is accounted at its end, so a long compilation may overshoot the budget; a sample which
+ * races with recycling of its bucket may be lost.
+ */
+public final class CompilationBudget {
+
+    static final int BUCKETS = 16;
+    /**
+     * System property with the budget in percents of the machine CPU, see {@link #fromSystemProperty()}.
+     */
+    public static final String PROPERTY = "jit.compileBudget";
+    static final long DEFAULT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final double share;
+    private final long windowNanos;
+    private final long bucketNanos;
+    private final long budgetNanos;
+    private final boolean cpuTime;
+
+    private final AtomicLongArray spent = new AtomicLongArray(BUCKETS);
+    // number of the bucket (time / bucketNanos) which currently owns every slot
+    private final AtomicLongArray epochs = new AtomicLongArray(BUCKETS);
+    private final AtomicLong deferrals = new AtomicLong(0);
+
+    /**
+     * @param share       fraction of the CPU time of all cores, {@code (0, 1]}
+     * @param windowNanos length of the sliding window
+     * @throws IllegalStateException if thread CPU time is supported by the JVM but switched off
+     */
+    public CompilationBudget(double share, long windowNanos) {
+        if (!(share > 0 && share <= 1)) {
+            throw new IllegalArgumentException("Share must be in (0, 1]: " + share);
+        }
+        if (windowNanos < BUCKETS) {
+            throw new IllegalArgumentException("Window is too short: " + windowNanos);
+        }
+        this.share = share;
+        this.windowNanos = windowNanos;
+        this.bucketNanos = windowNanos / BUCKETS;
+        this.budgetNanos = (long) (share * Runtime.getRuntime().availableProcessors() * windowNanos);
+        this.cpuTime = threads.isCurrentThreadCpuTimeSupported();
+        if (cpuTime && !threads.isThreadCpuTimeEnabled()) {
+            throw new IllegalStateException("Thread CPU time is switched off, compilation budget cannot be measured");
+        }
+        final long epoch = epoch(System.nanoTime());
+        for (int i = 0; i < BUCKETS; i++) {
+            epochs.set(i, epoch);
+        }
+    }
+
+    /**
+     * Budgets are opt-in: compilations are unlimited unless {@code -Djit.compileBudget} is set.
+     *
+     * @return budget of {@code -Djit.compileBudget} percents over 1 second, or {@code null} (unlimited) if the property
+     * is not set, is {@code 100} or more, or thread CPU time is switched off in this JVM
+     */
+    public static CompilationBudget fromSystemProperty() {
+        final Integer percent = Integer.getInteger(PROPERTY);
+        if (percent == null || percent >= 100) {
+            return null;
+        }
+        if (threads.isCurrentThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+            return null;
+        }
+        return new CompilationBudget(percent / 100.0, DEFAULT_WINDOW_NANOS);
+    }
+
+    /**
+     * @return CPU time (or wall time) of the current thread, pass it to {@link #record} after the compilation
+     */
+    public long start() {
+        return cpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Accounts the time spent by the current thread since {@code start}.
+     */
+    public void record(long start) {
+        final long nanos = start() - start;
+        if (nanos <= 0) {
+            return;
+        }
+        final long epoch = epoch(System.nanoTime());
+        final int slot = (int) Math.floorMod(epoch, (long) BUCKETS);
+        while (true) {
+            final long owner = epochs.get(slot);
+            if (owner >= epoch) {
+                break;
+            }
+            if (epochs.compareAndSet(slot, owner, epoch)) {
+                spent.set(slot, 0);
+                break;
+            }
+        }
+        spent.addAndGet(slot, nanos);
+    }
+
+    /**
+     * @return compilation time spent during the last window, in nanoseconds
+     */
+    public long used() {
+        final long epoch = epoch(System.nanoTime());
+        long sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (epoch - epochs.get(i) < BUCKETS) {
+                sum += spent.get(i);
+            }
+        }
+        return sum;
+    }
+
+    public boolean exceeded() {
+        return used() >= budgetNanos;
+    }
+
+    /**
+     * @return share of the machine CPU used by compilations during the last window, comparable with {@link #share()}
+     */
+    public double utilization() {
+        return (double) used() / (budgetNanos / share);
+    }
+
+    public double share() {
+        return share;
+    }
+
+    /**
+     * @return how long a deferred compilation should wait before checking the budget again
+     */
+    long retryNanos() {
+        return bucketNanos;
+    }
+
+    void deferred() {
+        deferrals.incrementAndGet();
+    }
+
+    /**
+     * @return number of times compiler threads found only non-urgent requests while over budget
+     */
+    public long deferrals() {
+        return deferrals.get();
+    }
+
+    private long epoch(long nanos) {
+        return Math.floorDiv(nanos, bucketNanos);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CompilationBudget(%.0f%% of %dms, utilization = %.1f%%)",
+                share * 100, TimeUnit.NANOSECONDS.toMillis(windowNanos), utilization() * 100);
+    }
+}
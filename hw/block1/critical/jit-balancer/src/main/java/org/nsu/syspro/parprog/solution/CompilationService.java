@@ -0,0 +1,239 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.TieringPolicy.Tier;
+import org.nsu.syspro.parprog.external.CompilationEngine;
+import org.nsu.syspro.parprog.external.CompiledMethod;
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Background compilation service: dedicated daemon compiler threads which execute {@code compile_l1}/{@code compile_l2}
+ * on behalf of {@link org.nsu.syspro.parprog.UserThread user threads}.
+ * <br>
+ * Guarantees:
+ * <ul>
+ *     <li> `Heavy-compilation-offloading`: compilation never happens in the thread which {@link #submit submits} it.
+ *     <li> `Thread-bound-compilation`: pool has exactly {@code compilationThreadBound} workers, so no more than
+ *     {@code compilationThreadBound} compilations run concurrently.
+ *     <li> `CPU-bound-compilation`: requests are coalesced by {@link SingleFlightCompiler}, so every
+ *     {@code (method, level)} pair is compiled at most once, or within {@link CodeCache.Entry#COMPILE_BUDGET} if its
+ *     code is evicted. Repeated submissions while the compilation is queued or running get the very same
+ *     {@link CompletableFuture}.
+ * </ul>
+ * Compiler threads drain the queue in batches of up to {@link #MAX_BATCH} requests of the same level, compiled by one
+ * {@link CompilationEngine#compile_l1(List, CompilationEngine.BatchCallback) batch call}, which saves a queue handoff
+ * and a wake-up per method when thousands of methods get hot at once.
+ * <br>
+ * Pending requests wait in {@link CompileQueue}: requests somebody {@link #await awaits} go first, the rest are
+ * ordered by live hotness of their methods with aging, and requests for methods which went cold while waiting are
+ * cancelled (their futures complete with {@link CancellationException}). Time spent in the queue is recorded in
+ * {@link #queueWait()}.
+ * <br>
+ * One service exists per {@link CompilationEngine}, see {@link JitRuntime#forEngine}. Idle workers terminate after
+ * {@link #KEEP_ALIVE_MS}, so an abandoned service does not keep any threads. Every request, including the ones which
+ * start a new worker, goes through the queue.
+ * <br>
+ * Optional {@link CompilationBudget} limits the CPU time of compilations: while it is exceeded, only awaited requests
+ * are started, see {@link #budget()} for the current utilization.
+ * <br>
+ * If the compiler is instrumented by {@link Tracing}, time spent by every request in the queue is reported there.
+ * <br>
+ * Weak points: a user thread learns that its request was cancelled only when it {@link #await awaits} the method.
+ */
+public final class CompilationService {
+
+    static final long KEEP_ALIVE_MS = 1_000;
+    static final int MAX_BATCH = 16;
+
+    private final int threadBound;
+    private final ThreadPoolExecutor pool;
+    private final CompileQueue queue;
+    private final SingleFlightCompiler singleFlight;
+    private final Tracing tracing;
+    private final CompilationBudget budget;
+
+    private final AtomicLong sequence = new AtomicLong(0);
+    private final AtomicLong cancelled = new AtomicLong(0);
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final TierStatistics queueStats = new TierStatistics();
+
+    public CompilationService(CompilationEngine compiler, CodeCache codeCache, int compilationThreadBound) {
+        this(compiler, codeCache, new TierStatistics(), compilationThreadBound);
+    }
+
+    /**
+     * @param compileStats receives durations of all compilations done by this service
+     */
+    public CompilationService(CompilationEngine compiler, CodeCache codeCache, TierStatistics compileStats, int compilationThreadBound) {
+        this(compiler, codeCache, compileStats, null, compilationThreadBound);
+    }
+
+    /**
+     * @param compileStats receives durations of all compilations done by this service
+     * @param hotness      live invocation counter of a method (e.g. {@link HotnessProfiler#globalCount}) which orders
+     *                     the queue, or {@code null} for FIFO order without cancellation
+     */
+    public CompilationService(CompilationEngine compiler, CodeCache codeCache, TierStatistics compileStats,
+                              LongUnaryOperator hotness, int compilationThreadBound) {
+        this(compiler, codeCache, compileStats, hotness, null, compilationThreadBound);
+    }
+
+    /**
+     * @param compileStats receives durations of all compilations done by this service
+     * @param hotness      live invocation counter of a method (e.g. {@link HotnessProfiler#globalCount}) which orders
+     *                     the queue, or {@code null} for FIFO order without cancellation
+     * @param budget       CPU budget of compilations, or {@code null} for unlimited
+     */
+    public CompilationService(CompilationEngine compiler, CodeCache codeCache, TierStatistics compileStats,
+                              LongUnaryOperator hotness, CompilationBudget budget, int compilationThreadBound) {
+        if (compilationThreadBound < 1) {
+            throw new IllegalArgumentException("At least one compiler thread is required: " + compilationThreadBound);
+        }
+        this.threadBound = compilationThreadBound;
+        this.budget = budget;
+        this.queue = new CompileQueue(hotness, CompileQueue.COLD_AFTER_NANOS, budget, MAX_BATCH, compilationThreadBound, new QueueListener());
+        this.pool = new ThreadPoolExecutor(
+                compilationThreadBound,
+                compilationThreadBound,
+                KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                queue,
+                new CompilerThreadFactory());
+        this.pool.allowCoreThreadTimeOut(true);
+        this.tracing = Tracing.of(compiler);
+        this.singleFlight = new SingleFlightCompiler(compiler, codeCache, compileStats,
+                (method, level, compilation) -> enqueue(queue.new Request(method, level, sequence.getAndIncrement(), compilation)));
+    }
+
+    /**
+     * Not {@code pool.execute}: below its core size the pool hands a task to a new worker directly, so the first
+     * requests after start and after every idle timeout would skip priorities, cancellation and budget of the queue.
+     * A worker started without a task takes it from the queue like everybody else. If the last worker is terminating
+     * right now, the pool replaces it by itself because the queue is not empty.
+     */
+    private void enqueue(CompileQueue.Request request) {
+        queue.offer(request);
+        pool.prestartCoreThread();
+    }
+
+    public int threadBound() {
+        return threadBound;
+    }
+
+    /**
+     * Schedules compilation of {@code method} by JIT of given {@code level} unless it is already scheduled or done.
+     * Never blocks and never compiles in the caller thread. Result is {@link CodeCache#publish published} before the
+     * future completes.
+     */
+    public CompletableFuture<CompiledMethod> submit(MethodID method, int level) {
+        return singleFlight.compile(method, level);
+    }
+
+    /**
+     * Blocks until code of {@code method} of given or higher {@code level} is compiled. The request jumps to the head of
+     * the queue and is never cancelled.
+     *
+     * @return compiled code, or {@code null} if the code of this level was evicted and the method may not be compiled
+     * by this level anymore
+     */
+    public CompiledMethod await(MethodID method, int level) {
+        while (true) {
+            final CompletableFuture<CompiledMethod> flight = submit(method, level);
+            queue.markUrgent(method.id(), level);
+            try {
+                return flight.join();
+            } catch (CancellationException e) {
+                // went cold right before it was marked urgent, submit again
+            }
+        }
+    }
+
+    /**
+     * @return future of submitted compilation which is queued or running right now, or {@code null}
+     */
+    public CompletableFuture<CompiledMethod> inFlight(long methodId, int level) {
+        return singleFlight.inFlight(methodId, level);
+    }
+
+    public int queued() {
+        return queue.size();
+    }
+
+    /**
+     * @return time between submission and start of every compilation
+     */
+    public LatencyHistogram queueWait() {
+        return queueWait;
+    }
+
+    /**
+     * @return moving average of time between submission and start of compilations by given tier, or {@code -1}
+     */
+    public long queueNanos(Tier tier) {
+        return queueStats.average(tier);
+    }
+
+    /**
+     * @return CPU budget of compilations, or {@code null} if it is unlimited
+     */
+    public CompilationBudget budget() {
+        return budget;
+    }
+
+    /**
+     * @return number of requests dropped because their methods went cold
+     */
+    public long cancelled() {
+        return cancelled.get();
+    }
+
+    private final class QueueListener implements CompileQueue.Listener {
+        @Override
+        public void started(CompileQueue.Request request, long startNanos) {
+            queueWait.record(startNanos - request.enqueuedNanos);
+            queueStats.record(Tier.ofLevel(request.level), startNanos - request.enqueuedNanos);
+            if (tracing != null) {
+                tracing.recordQueueWait(request.method, request.level, request.enqueuedNanos, startNanos);
+            }
+        }
+
+        @Override
+        public void cancelled(CompileQueue.Request request) {
+            cancelled.incrementAndGet();
+            singleFlight.cancel(request.method, request.level);
+        }
+
+        @Override
+        public void run(int level, List<CompileQueue.Request> batch) {
+            final List<SingleFlightCompiler.Compilation> compilations = new ArrayList<>(batch.size());
+            for (CompileQueue.Request r : batch) {
+                compilations.add((SingleFlightCompiler.Compilation) r.compilation);
+            }
+            // a request of the batch waits in the queue until the compilations before it are done
+            singleFlight.compileBatch(level, compilations, (compilation, startNanos) -> {
+                for (CompileQueue.Request r : batch) {
+                    if (r.compilation == compilation) {
+                        started(r, startNanos);
+                        return;
+                    }
+                }
+            });
+        }
+    }
+
+    private static final class CompilerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger threadNum = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread t = new Thread(r, "CompilerThread-" + threadNum.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
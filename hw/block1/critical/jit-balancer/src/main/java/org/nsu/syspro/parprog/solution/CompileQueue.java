@@ -0,0 +1,427 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Work queue of {@link CompilationService} ordered by live hotness of the methods rather than by submission time.
+ * <br>
+ * Priority of a request is computed when a compiler thread takes the next one, not when it is submitted, so a method
+ * which keeps getting hotter while waiting overtakes the methods which just crossed the threshold:
+ * <ol>
+ *     <li> {@link #markUrgent urgent} requests go first, in submission order: some user thread is blocked on them;
+ *     <li> then the request with the biggest {@code hotness(method) + AGING_PER_MS * waitedMillis}. Aging guarantees
+ *     that every request is eventually taken, however hot the newcomers are.
+ * </ol>
+ * Request which is not urgent and whose method got less than {@link HotnessProfiler#FLUSH_INTERVAL} new invocations
+ * during {@link #COLD_AFTER_NANOS} (by default) of waiting has gone cold. It is dropped from the queue and reported to
+ * {@link Listener#cancelled}.
+ * <br>
+ * Without hotness source the queue degrades to FIFO with urgent requests first and never cancels anything.
+ * <br>
+ * A compiler thread takes a batch of requests of the same level at once, see {@link Request#run()}.
+ * <br>
+ * With {@link CompilationBudget} the CPU time of every compilation is accounted, and while the budget is exceeded only
+ * urgent requests are taken; compiler threads re-check the budget every {@link CompilationBudget#retryNanos()}.
+ * <br>
+ * Weak points: selection scans all waiting requests under the queue lock, which is fine for thousands of requests
+ * since every compilation is much more expensive than the scan.
+ */
+final class CompileQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    static final long AGING_PER_MS = 1_000;
+    static final long COLD_AFTER_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    interface Listener {
+        /**
+         * Called by the compiler thread once per request when its compilation begins, or later (e.g. when a batch
+         * compiler reports the result) with the moment it began.
+         *
+         * @param startNanos {@link System#nanoTime()} when the compilation of the request began
+         */
+        void started(Request request, long startNanos);
+
+        /**
+         * Called outside of the queue lock for every request which went cold and was dropped.
+         */
+        void cancelled(Request request);
+
+        /**
+         * Runs compilations of the batch taken by a compiler thread, all of the same level, and reports their
+         * {@link #started starts}. By default one by one.
+         */
+        default void run(int level, List<Request> batch) {
+            for (Request r : batch) {
+                started(r, System.nanoTime());
+                r.compilation.run();
+            }
+        }
+    }
+
+    final class Request implements Runnable {
+        final MethodID method;
+        final int level;
+        final long seq;
+        final long enqueuedNanos = System.nanoTime();
+        final long hotnessAtEnqueue;
+        final Runnable compilation;
+        private boolean urgent; // guarded by lock
+
+        Request(MethodID method, int level, long seq, Runnable compilation) {
+            this.method = method;
+            this.level = level;
+            this.seq = seq;
+            this.compilation = compilation;
+            this.hotnessAtEnqueue = hotness(method.id());
+        }
+
+        /**
+         * Runs this request together with the batch of other waiting requests of the same level.
+         */
+        @Override
+        public void run() {
+            final List<Request> batch = batchOf(this);
+            if (budget == null) {
+                listener.run(level, batch);
+                return;
+            }
+            final long start = budget.start();
+            try {
+                listener.run(level, batch);
+            } finally {
+                budget.record(start);
+            }
+        }
+    }
+
+    private final LongUnaryOperator hotness;
+    private final long coldAfterNanos;
+    private final Listener listener;
+    private final CompilationBudget budget;
+    private final int maxBatch;
+    private final int workers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayList<Request> requests = new ArrayList<>();
+
+    /**
+     * @param hotness live invocation counter of the method, or {@code null}
+     */
+    CompileQueue(LongUnaryOperator hotness, Listener listener) {
+        this(hotness, COLD_AFTER_NANOS, null, listener);
+    }
+
+    /**
+     * @param budget CPU budget of compilations, or {@code null}
+     */
+    CompileQueue(LongUnaryOperator hotness, long coldAfterNanos, CompilationBudget budget, Listener listener) {
+        this(hotness, coldAfterNanos, budget, 1, 1, listener);
+    }
+
+    /**
+     * @param budget   CPU budget of compilations, or {@code null}
+     * @param maxBatch max number of requests a compiler thread takes at once
+     * @param workers  number of compiler threads which share the queue
+     */
+    CompileQueue(LongUnaryOperator hotness, long coldAfterNanos, CompilationBudget budget, int maxBatch, int workers,
+                 Listener listener) {
+        assert maxBatch >= 1 && workers >= 1;
+        this.hotness = hotness;
+        this.coldAfterNanos = coldAfterNanos;
+        this.budget = budget;
+        this.maxBatch = maxBatch;
+        this.workers = workers;
+        this.listener = listener;
+    }
+
+    /**
+     * Moves the request of {@code (methodId, level)} to the head of the queue and protects it from cancellation.
+     *
+     * @return whether the request is waiting in the queue
+     */
+    boolean markUrgent(long methodId, int level) {
+        lock.lock();
+        try {
+            for (Request r : requests) {
+                if (r.method.id() == methodId && r.level == level) {
+                    r.urgent = true;
+                    notEmpty.signal(); // a compiler thread may be deferred by budget
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable runnable) {
+        final Request request = (Request) Objects.requireNonNull(runnable);
+        lock.lock();
+        try {
+            requests.add(request);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable runnable) {
+        offer(runnable);
+    }
+
+    @Override
+    public boolean offer(Runnable runnable, long timeout, TimeUnit unit) {
+        return offer(runnable);
+    }
+
+    @Override
+    public Request poll() {
+        final ArrayList<Request> cold = new ArrayList<>(0);
+        lock.lock();
+        try {
+            return select(cold);
+        } finally {
+            lock.unlock();
+            cancel(cold);
+        }
+    }
+
+    @Override
+    public Request take() throws InterruptedException {
+        final ArrayList<Request> cold = new ArrayList<>(0);
+        lock.lockInterruptibly();
+        try {
+            Request next;
+            while ((next = select(cold)) == null) {
+                if (requests.isEmpty()) {
+                    notEmpty.await();
+                } else {
+                    notEmpty.awaitNanos(budget.retryNanos()); // deferred by budget
+                }
+            }
+            return next;
+        } finally {
+            lock.unlock();
+            cancel(cold);
+        }
+    }
+
+    @Override
+    public Request poll(long timeout, TimeUnit unit) throws InterruptedException {
+        final ArrayList<Request> cold = new ArrayList<>(0);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            Request next;
+            while ((next = select(cold)) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                if (requests.isEmpty()) {
+                    nanos = notEmpty.awaitNanos(nanos);
+                } else {
+                    // deferred by budget
+                    final long wait = Math.min(nanos, budget.retryNanos());
+                    nanos -= wait - notEmpty.awaitNanos(wait);
+                }
+            }
+            return next;
+        } finally {
+            lock.unlock();
+            cancel(cold);
+        }
+    }
+
+    @Override
+    public Request peek() {
+        lock.lock();
+        try {
+            return requests.isEmpty() ? null : requests.get(best(System.nanoTime()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            return requests.remove(o);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return requests.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return snapshot iterator which does not support removal
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            return Collections.<Runnable>unmodifiableList(new ArrayList<>(requests)).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        lock.lock();
+        try {
+            final int n = Math.min(maxElements, requests.size());
+            for (int i = 0; i < n; i++) {
+                c.add(requests.remove(requests.size() - 1));
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return {@code head} followed by the best waiting requests of the same level: no more than {@code maxBatch} in
+     * total and no more than a fair share of the queue per worker, so that a batch does not serialize compilations
+     * which idle workers could run in parallel
+     */
+    private List<Request> batchOf(Request head) {
+        if (maxBatch == 1) {
+            return Collections.singletonList(head);
+        }
+        final ArrayList<Request> batch = new ArrayList<>();
+        batch.add(head);
+        lock.lock();
+        try {
+            final int limit = Math.min(maxBatch, 1 + requests.size() / workers);
+            final long now = System.nanoTime();
+            final boolean overBudget = budget != null && budget.exceeded();
+            while (batch.size() < limit) {
+                int best = -1;
+                for (int i = 0; i < requests.size(); i++) {
+                    final Request r = requests.get(i);
+                    if (r.level == head.level && (!overBudget || r.urgent)
+                            && (best < 0 || compare(r, requests.get(best), now) > 0)) {
+                        best = i;
+                    }
+                }
+                if (best < 0) {
+                    break;
+                }
+                batch.add(removeAt(best));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return batch;
+    }
+
+    private void cancel(List<Request> cold) {
+        for (Request r : cold) {
+            listener.cancelled(r);
+        }
+    }
+
+    private Request select(List<Request> cold) {
+        assert lock.isHeldByCurrentThread();
+        final long now = System.nanoTime();
+        if (hotness != null) {
+            for (int i = requests.size() - 1; i >= 0; i--) {
+                final Request r = requests.get(i);
+                if (isCold(r, now)) {
+                    removeAt(i);
+                    cold.add(r);
+                }
+            }
+        }
+        if (requests.isEmpty()) {
+            return null;
+        }
+        final int best = best(now);
+        if (budget != null && !requests.get(best).urgent && budget.exceeded()) {
+            budget.deferred();
+            return null;
+        }
+        return removeAt(best);
+    }
+
+    private int best(long now) {
+        int best = 0;
+        for (int i = 1; i < requests.size(); i++) {
+            if (compare(requests.get(i), requests.get(best), now) > 0) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return positive if {@code a} should be compiled before {@code b}
+     */
+    private int compare(Request a, Request b, long now) {
+        if (a.urgent != b.urgent) {
+            return a.urgent ? 1 : -1;
+        }
+        if (!a.urgent) {
+            final int byPriority = Long.compare(priority(a, now), priority(b, now));
+            if (byPriority != 0) {
+                return byPriority;
+            }
+        }
+        return Long.compare(b.seq, a.seq);
+    }
+
+    private long priority(Request r, long now) {
+        final long waitedMillis = (now - r.enqueuedNanos) / 1_000_000;
+        return hotness(r.method.id()) + AGING_PER_MS * waitedMillis;
+    }
+
+    private boolean isCold(Request r, long now) {
+        return !r.urgent
+                && now - r.enqueuedNanos > coldAfterNanos
+                && hotness(r.method.id()) - r.hotnessAtEnqueue < HotnessProfiler.FLUSH_INTERVAL;
+    }
+
+    private long hotness(long methodId) {
+        return (hotness == null) ? 0 : hotness.applyAsLong(methodId);
+    }
+
+    private Request removeAt(int i) {
+        // order of the list does not matter, so remove in O(1)
+        final Request last = requests.remove(requests.size() - 1);
+        if (i == requests.size()) {
+            return last;
+        }
+        return requests.set(i, last);
+    }
+}
@@ -0,0 +1,93 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.TieringPolicy;
+import org.nsu.syspro.parprog.external.MethodID;
+
+/**
+ * Tiering by measured costs: method is compiled by tier {@code T} when the time it is expected to save pays for the
+ * compilation, i.e.
+ * <pre>
+ *     expectedInvocations * (executeNanos(available) - executeNanos(T)) >= payoff * compileNanos(T)
+ * </pre>
+ * Expected number of future invocations is estimated by the number of past invocations: methods which were hot
+ * tend to stay hot. Costs come from {@link Profile#compileNanos} and {@link Profile#executeNanos}; until they are
+ * measured, {@code defaultCompileNanos}/{@code defaultExecuteNanos} are used.
+ * <br>
+ * Workloads where compilation is orders of magnitude more expensive than execution (or the opposite) are handled
+ * naturally: the same formula either postpones compilation or triggers it right away.
+ * <br>
+ * When measurements show no gain (e.g. all costs are near zero) the decision falls back to the {@code backstop} policy,
+ * so the method is still compiled eventually.
+ * <br>
+ * Stateless apart from the backstop, allocation-free.
+ */
+public final class CostModelTieringPolicy implements TieringPolicy {
+
+    private final double payoff;
+    private final long[] defaultCompileNanos;
+    private final long[] defaultExecuteNanos;
+    private final TieringPolicy backstop;
+
+    /**
+     * @param payoff              how many times saved time must exceed compilation time, {@code > 0}
+     * @param defaultCompileNanos compile costs of {@code [INTERPRETER, L1, L2]} until measured
+     * @param defaultExecuteNanos execute costs of {@code [INTERPRETER, L1, L2]} until measured
+     * @param backstop            policy which is used when the cost model sees no benefit
+     */
+    public CostModelTieringPolicy(double payoff, long[] defaultCompileNanos, long[] defaultExecuteNanos, TieringPolicy backstop) {
+        if (!(payoff > 0)) {
+            throw new IllegalArgumentException("Payoff must be positive: " + payoff);
+        }
+        if (defaultCompileNanos.length != Tier.values().length || defaultExecuteNanos.length != Tier.values().length) {
+            throw new IllegalArgumentException("Default costs must be provided for every tier");
+        }
+        this.payoff = payoff;
+        this.defaultCompileNanos = defaultCompileNanos.clone();
+        this.defaultExecuteNanos = defaultExecuteNanos.clone();
+        this.backstop = backstop;
+    }
+
+    /**
+     * Policy with default costs resembling a typical VM: interpretation is ten times slower than L2 code,
+     * L1 compilation takes 10 microseconds, L2 compilation takes 1 millisecond.
+     */
+    public static CostModelTieringPolicy withDefaults(TieringPolicy backstop) {
+        return new CostModelTieringPolicy(
+                2.0,
+                new long[]{0, 10_000, 1_000_000},
+                new long[]{100, 30, 10},
+                backstop);
+    }
+
+    @Override
+    public Tier decide(MethodID method, Profile profile) {
+        final Tier available = profile.available();
+        final long invocations = Math.max(profile.localInvocations(), profile.globalInvocations());
+        final long current = executeNanos(profile, available);
+
+        for (int level = Tier.L2.level(); level > available.level(); level--) {
+            final Tier target = Tier.ofLevel(level);
+            final long gain = current - executeNanos(profile, target);
+            if (gain > 0 && (double) invocations * gain >= payoff * compileNanos(profile, target)) {
+                return target;
+            }
+        }
+
+        return backstop.decide(method, profile);
+    }
+
+    private long compileNanos(Profile profile, Tier tier) {
+        final long measured = profile.compileNanos(tier);
+        return (measured < 0) ? defaultCompileNanos[tier.ordinal()] : measured;
+    }
+
+    private long executeNanos(Profile profile, Tier tier) {
+        final long measured = profile.executeNanos(tier);
+        return (measured < 0) ? defaultExecuteNanos[tier.ordinal()] : measured;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CostModelTieringPolicy(payoff = %.2f, backstop = %s)", payoff, backstop);
+    }
+}
@@ -0,0 +1,117 @@
+package org.nsu.syspro.parprog.solution;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Insert-only concurrent map from {@link org.nsu.syspro.parprog.external.MethodID#id() method ids} to values, indexed
+ * directly by id.
+ * <br>
+ * Method ids are dense non-negative numbers in practice, so the value of id {@code i} lives in slot
+ * {@code i % CHUNK_SIZE} of chunk {@code i / CHUNK_SIZE}. Chunks are allocated on demand and installed into a fixed
+ * directory by CAS, so neither lookups nor growth take locks:
+ * <ul>
+ *     <li> {@link #get(long)} is two volatile array loads, no hashing and no probing;
+ *     <li> {@link #computeIfAbsent} installs the value by CAS on its slot. Concurrent callers may both run the factory,
+ *     only one value wins and is returned to everybody;
+ *     <li> an empty chunk costs {@code CHUNK_SIZE} references, a million entries cost about 4 bytes per entry on top of
+ *     the values themselves.
+ * </ul>
+ * Ids which do not fit the directory (negative or {@code >= MAX_DENSE_ID}) go to the hashed
+ * {@link LongConcurrentTable} fallback, so sparse ids are still supported, at the price of its insertion lock.
+ * <br>
+ * Weak points: the directory itself ({@link #DIRECTORY_SIZE} references) is allocated eagerly; a factory must be cheap
+ * and side effect free, since its result may be thrown away.
+ */
+final class DenseLongTable<V> {
+
+    static final int CHUNK_BITS = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int DIRECTORY_BITS = 14;
+    static final int DIRECTORY_SIZE = 1 << DIRECTORY_BITS;
+    static final long MAX_DENSE_ID = (long) DIRECTORY_SIZE * CHUNK_SIZE;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<V>> chunks = new AtomicReferenceArray<>(DIRECTORY_SIZE);
+    private final LongConcurrentTable<V> sparse;
+    private final AtomicInteger denseSize = new AtomicInteger(0);
+
+    /**
+     * @param sparseCapacity initial capacity of the fallback for ids which are out of the dense range
+     */
+    DenseLongTable(int sparseCapacity, LongConcurrentTable.KeyOf<V> keyOf) {
+        this.sparse = new LongConcurrentTable<>(sparseCapacity, keyOf);
+    }
+
+    /**
+     * Lock-free, allocation-free lookup.
+     *
+     * @return value or {@code null} if nothing was inserted for the key
+     */
+    V get(long key) {
+        if (!isDense(key)) {
+            return sparse.get(key);
+        }
+        final AtomicReferenceArray<V> chunk = chunks.get((int) (key >>> CHUNK_BITS));
+        return (chunk == null) ? null : chunk.get((int) key & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Lock-free for dense keys, see {@link LongConcurrentTable#computeIfAbsent} for the rest.
+     */
+    V computeIfAbsent(long key, LongFunction<V> factory) {
+        if (!isDense(key)) {
+            return sparse.computeIfAbsent(key, factory);
+        }
+        final AtomicReferenceArray<V> chunk = chunk((int) (key >>> CHUNK_BITS));
+        final int slot = (int) key & (CHUNK_SIZE - 1);
+        final V existing = chunk.get(slot);
+        if (existing != null) {
+            return existing;
+        }
+        final V created = factory.apply(key);
+        if (chunk.compareAndSet(slot, null, created)) {
+            denseSize.incrementAndGet();
+            return created;
+        }
+        return chunk.get(slot);
+    }
+
+    int size() {
+        return denseSize.get() + sparse.size();
+    }
+
+    /**
+     * Weakly consistent iteration in the order of dense ids, then sparse ones: values inserted concurrently may be
+     * missed.
+     */
+    void forEach(Consumer<? super V> action) {
+        for (int c = 0; c < DIRECTORY_SIZE; c++) {
+            final AtomicReferenceArray<V> chunk = chunks.get(c);
+            if (chunk == null) {
+                continue;
+            }
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                final V v = chunk.get(i);
+                if (v != null) {
+                    action.accept(v);
+                }
+            }
+        }
+        sparse.forEach(action);
+    }
+
+    private AtomicReferenceArray<V> chunk(int index) {
+        final AtomicReferenceArray<V> existing = chunks.get(index);
+        if (existing != null) {
+            return existing;
+        }
+        final AtomicReferenceArray<V> created = new AtomicReferenceArray<>(CHUNK_SIZE);
+        return chunks.compareAndSet(index, null, created) ? created : chunks.get(index);
+    }
+
+    static boolean isDense(long key) {
+        return key >= 0 && key < MAX_DENSE_ID;
+    }
+}
@@ -0,0 +1,149 @@
+package org.nsu.syspro.parprog.solution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size ring buffer of JIT events: compilations, time spent in the compile queue, blocking waits for compiled code
+ * and per-thread tier transitions. When the buffer is full the oldest events are overwritten.
+ * <br>
+ * Recording is lock-free: a writer claims a slot by incrementing a shared cursor and publishes an immutable
+ * {@link Event} into it. Events are rare compared to method invocations (a few per method), so an allocation per event
+ * is acceptable.
+ * <br>
+ * Weak points: {@link #events()} is a weakly consistent snapshot, an event being written concurrently may be missing or
+ * replaced by a newer one.
+ */
+public final class EventTrace {
+
+    public enum Type {
+        /**
+         * {@code compile_l1}/{@code compile_l2} call, {@link Event#level} is the target level.
+         */
+        COMPILATION,
+        /**
+         * Time between submission of a compile request and the start of its compilation.
+         */
+        QUEUE_WAIT,
+        /**
+         * User thread is blocked until code of {@link Event#level} is published.
+         */
+        AWAIT,
+        /**
+         * First execution of a method at {@link Event#level} in the thread, instant event.
+         */
+        TIER_TRANSITION,
+    }
+
+    public static final class Event {
+        public final Type type;
+        public final long startNanos;
+        public final long durationNanos;
+        public final long threadId;
+        public final String threadName;
+        public final long methodId;
+        public final int level;
+
+        Event(Type type, long startNanos, long durationNanos, Thread thread, long methodId, int level) {
+            this.type = type;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            this.methodId = methodId;
+            this.level = level;
+        }
+    }
+
+    private final AtomicReferenceArray<Event> ring;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong(0);
+    private final long originNanos = System.nanoTime();
+
+    /**
+     * @param capacity rounded up to the power of two
+     */
+    public EventTrace(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        final int size = Integer.highestOneBit(Math.min(capacity, 1 << 30) * 2 - 1);
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public void record(Type type, long startNanos, long durationNanos, long methodId, int level) {
+        final Event event = new Event(type, startNanos, durationNanos, Thread.currentThread(), methodId, level);
+        ring.set((int) (cursor.getAndIncrement() & mask), event);
+    }
+
+    /**
+     * @return total number of recorded events, including overwritten ones
+     */
+    public long recorded() {
+        return cursor.get();
+    }
+
+    /**
+     * @return retained events, oldest first
+     */
+    public List<Event> events() {
+        final long end = cursor.get();
+        final long begin = Math.max(0, end - ring.length());
+        final List<Event> result = new ArrayList<>((int) (end - begin));
+        for (long i = begin; i < end; i++) {
+            final Event event = ring.get((int) (i & mask));
+            if (event != null) {
+                result.add(event);
+            }
+        }
+        result.sort((a, b) -> Long.compare(a.startNanos, b.startNanos));
+        return result;
+    }
+
+    /**
+     * @return JSON array of retained events, timestamps are in nanoseconds since creation of this trace
+     */
+    public String toJson() {
+        final StringBuilder sb = new StringBuilder("[");
+        String separator = "\n";
+        for (Event e : events()) {
+            sb.append(separator).append(String.format(
+                    "  {\"type\": \"%s\", \"start\": %d, \"duration\": %d, \"thread\": \"%s\", \"method\": %d, \"level\": %d}",
+                    e.type, e.startNanos - originNanos, e.durationNanos, escape(e.threadName), e.methodId, e.level));
+            separator = ",\n";
+        }
+        return sb.append("\n]").toString();
+    }
+
+    /**
+     * @return retained events in Chrome Trace Event Format, to be opened by {@code chrome://tracing} or Perfetto
+     */
+    public String toChromeTrace() {
+        final StringBuilder sb = new StringBuilder("{\"displayTimeUnit\": \"ns\", \"traceEvents\": [");
+        String separator = "\n";
+        for (Event e : events()) {
+            final String name = (e.type == Type.TIER_TRANSITION)
+                    ? "tier L" + e.level
+                    : e.type.name().toLowerCase() + " L" + e.level;
+            sb.append(separator).append(String.format(
+                    "  {\"name\": \"%s\", \"cat\": \"jit\", \"ph\": \"%s\", \"ts\": %.3f, ",
+                    name, (e.type == Type.TIER_TRANSITION) ? "i" : "X", (e.startNanos - originNanos) / 1000.0));
+            if (e.type == Type.TIER_TRANSITION) {
+                sb.append("\"s\": \"t\", ");
+            } else {
+                sb.append(String.format("\"dur\": %.3f, ", e.durationNanos / 1000.0));
+            }
+            sb.append(String.format("\"pid\": 1, \"tid\": %d, \"args\": {\"method\": %d, \"thread\": \"%s\"}}",
+                    e.threadId, e.methodId, escape(e.threadName)));
+            separator = ",\n";
+        }
+        return sb.append("\n]}").toString();
+    }
+
+    static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
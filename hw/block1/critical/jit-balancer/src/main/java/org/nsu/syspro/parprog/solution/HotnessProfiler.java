@@ -0,0 +1,114 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Invocation profiler with per-thread striping.
+ * <br>
+ * Every user thread owns a {@link Stripe}: a thread-private {@link LongLongMap} of invocation counters. Stripes are
+ * merged into the global view in chunks of {@link #FLUSH_INTERVAL} invocations, so the shared counter of a method is
+ * touched once per {@link #FLUSH_INTERVAL} local invocations instead of on every call. Counting itself
+ * ({@link Stripe#record}) does not allocate and does not synchronize with other threads.
+ * <br>
+ * Tier-up decisions read the global view through {@link #globalCount}: {@link SolutionThread} passes it to
+ * {@link org.nsu.syspro.parprog.TieringPolicy tiering policies} as
+ * {@link org.nsu.syspro.parprog.TieringPolicy.Profile#globalInvocations()}, so a method hot in many threads is compiled
+ * before any single thread gets there.
+ * <br>
+ * Weak points:
+ * <ul>
+ *     <li> global view lags behind the real number of invocations by up to {@code (FLUSH_INTERVAL - 1) * threads};
+ *     <li> global counters are indexed by method id ({@link DenseLongTable}), so a sparse id space falls back to a
+ *     hashed table whose insertions take a lock.
+ * </ul>
+ */
+public final class HotnessProfiler {
+
+    /**
+     * Receives global counters, see {@link #forEachGlobal}.
+     */
+    public interface CounterVisitor {
+        void visit(long methodId, long invocations);
+    }
+
+    static final int FLUSH_INTERVAL = 64;
+
+    static {
+        assert Integer.bitCount(FLUSH_INTERVAL) == 1;
+    }
+
+    private static final class Counter {
+        private static final AtomicLongFieldUpdater<Counter> COUNT = AtomicLongFieldUpdater.newUpdater(Counter.class, "count");
+
+        final long methodId;
+        volatile long count;
+
+        Counter(long methodId) {
+            this.methodId = methodId;
+        }
+    }
+
+    private final DenseLongTable<Counter> global = new DenseLongTable<>(64, c -> c.methodId);
+
+    /**
+     * @return new stripe which must be used by a single thread only
+     */
+    public Stripe newStripe() {
+        return new Stripe();
+    }
+
+    /**
+     * @return merged number of invocations of the method in all threads, lags behind the real value
+     */
+    public long globalCount(long methodId) {
+        final Counter c = global.get(methodId);
+        return (c == null) ? 0 : c.count;
+    }
+
+    /**
+     * Visits global counters of all methods flushed at least once. Weakly consistent, meant for snapshots.
+     */
+    public void forEachGlobal(CounterVisitor visitor) {
+        global.forEach(c -> visitor.visit(c.methodId, c.count));
+    }
+
+    private void flush(long methodId, long delta) {
+        Counter c = global.get(methodId);
+        if (c == null) {
+            c = global.computeIfAbsent(methodId, Counter::new);
+        }
+        Counter.COUNT.getAndAdd(c, delta);
+    }
+
+    /**
+     * Thread-private part of the profile.
+     */
+    public final class Stripe {
+        private final LongLongMap local = new LongLongMap();
+
+        private Stripe() {
+        }
+
+        /**
+         * Counts one invocation of the method.
+         *
+         * @return number of invocations of the method recorded by this stripe (including this one)
+         */
+        public long record(MethodID method) {
+            final long n = local.increment(method.id());
+            if ((n & (FLUSH_INTERVAL - 1)) == 0) {
+                flush(method.id(), FLUSH_INTERVAL);
+            }
+            return n;
+        }
+
+        /**
+         * @return number of invocations recorded by this stripe
+         */
+        public long count(long methodId) {
+            return local.get(methodId);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.nsu.syspro.parprog.solution;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-private direct-mapped cache {@code methodId -> CompiledCode}, the first place where a user thread looks for
+ * code to execute.
+ * <br>
+ * Fixed number of slots, every method maps to exactly one of them, a newcomer simply overwrites the previous occupant.
+ * Hence {@link #get} is a few plain loads: no hashing loops, no allocation, no volatile reads, no locks. It matters for
+ * recursive method chains, where every nested {@code executeMethod} pays for the lookup again.
+ * <br>
+ * The cache is owned by one thread and is never invalidated: it must only hold code which the owner may keep executing
+ * until something better appears (L2 code, after which `Per-thread-monotonicity` allows nothing else, or L1 code which
+ * the owner has already executed). Lower-level code is upgraded by {@link #revalidate}, which the owner calls when
+ * {@link CodeCache#epoch()} changes.
+ */
+public final class InlineCache {
+
+    public static final int DEFAULT_SLOTS = 256;
+
+    private final long[] ids;
+    private final CodeCache.CompiledCode[] codes;
+    private final int mask;
+
+    public InlineCache() {
+        this(DEFAULT_SLOTS);
+    }
+
+    /**
+     * @param slots rounded up to the power of two
+     */
+    public InlineCache(int slots) {
+        if (slots < 1) {
+            throw new IllegalArgumentException("At least one slot is required: " + slots);
+        }
+        final int n = Integer.highestOneBit(Math.min(slots, 1 << 30) * 2 - 1);
+        this.ids = new long[n];
+        this.codes = new CodeCache.CompiledCode[n];
+        this.mask = n - 1;
+    }
+
+    /**
+     * @return cached code of the method or {@code null}
+     */
+    public CodeCache.CompiledCode get(long methodId) {
+        final int i = LongConcurrentTable.indexFor(methodId, mask);
+        final CodeCache.CompiledCode code = codes[i];
+        return (code != null && ids[i] == methodId) ? code : null;
+    }
+
+    /**
+     * Caches {@code code} of the method, evicting whatever occupied its slot.
+     */
+    public void put(long methodId, CodeCache.CompiledCode code) {
+        assert code.method.id().id() == methodId;
+        final int i = LongConcurrentTable.indexFor(methodId, mask);
+        ids[i] = methodId;
+        codes[i] = code;
+    }
+
+    /**
+     * Replaces cached code below L2 by the better code published to {@code codeCache} since it was cached. Costs one
+     * shared lookup per such slot, slots with L2 code and empty slots are skipped.
+     *
+     * @param accept maps the better code to the code to be cached (e.g. pins it), must not return a lower level
+     */
+    public void revalidate(CodeCache codeCache, UnaryOperator<CodeCache.CompiledCode> accept) {
+        for (int i = 0; i < codes.length; i++) {
+            final CodeCache.CompiledCode cached = codes[i];
+            if (cached == null || cached.level == 2) {
+                continue;
+            }
+            final CodeCache.CompiledCode published = codeCache.code(ids[i]);
+            if (published != null && published.level > cached.level) {
+                codes[i] = accept.apply(published);
+            }
+        }
+    }
+
+    public int slots() {
+        return codes.length;
+    }
+}
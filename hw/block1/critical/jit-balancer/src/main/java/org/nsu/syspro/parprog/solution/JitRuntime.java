@@ -0,0 +1,120 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.external.CompilationEngine;
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.LongFunction;
+
+/**
+ * Shared JIT infrastructure of all {@link SolutionThread}s which use the same {@link CompilationEngine}:
+ * <ul>
+ *     <li> {@link CodeCache} with published code;
+ *     <li> {@link CompilationService} with compiler threads, limited by {@link CompilationBudget#fromSystemProperty()}
+ *     if the budget is set;
+ *     <li> {@link HotnessProfiler} with global invocation counters;
+ *     <li> {@link TierStatistics} of measured compile and execute durations, consumed by
+ *     {@link org.nsu.syspro.parprog.TieringPolicy tiering policies}, and the default {@link #tieringPolicy};
+ *     <li> {@link Tracing} of the compiler, if it is {@link Tracing#wrap(CompilationEngine) instrumented}.
+ * </ul>
+ * Profile of the runtime survives restarts via {@link #saveProfile} and {@link #warmStart}.
+ * <br>
+ * Runtimes of different engines share nothing, code compiled by one engine is never executed by threads of another.
+ * The registry holds neither engines nor runtimes: a runtime lives while some {@link SolutionThread} (or other caller of
+ * {@link #forEngine}) references it, then it is collected with its cache, and idle compiler threads terminate by
+ * themselves.
+ * <br>
+ * Weak points: a runtime which nobody references is forgotten, a later user thread of the same engine starts with
+ * empty cache and profile.
+ */
+public final class JitRuntime {
+
+    /**
+     * Methods which were not compiled in the previous run but were at least that hot are compiled by L1 on warm start.
+     */
+    static final long WARM_START_MIN_INVOCATIONS = 1_000;
+
+    // values are weak too: a runtime references its engine, strong values would keep the keys forever.
+    // Engines do not override equals(), so WeakHashMap compares them by identity.
+    private static final Map<CompilationEngine, WeakReference<JitRuntime>> runtimes = new WeakHashMap<>();
+
+    public final CodeCache codeCache;
+    public final CompilationService compilationService;
+    public final HotnessProfiler profiler;
+    public final TierStatistics compileStats;
+    public final TierStatistics executeStats;
+    /**
+     * Default policy of {@link SolutionThread}s: thresholds with {@link L1SkipTieringPolicy L1 skip}, shared so that
+     * skip decisions are made once per method and counted in one place.
+     */
+    public final L1SkipTieringPolicy tieringPolicy;
+    /**
+     * {@code null} unless the compiler is instrumented
+     */
+    public final Tracing tracing;
+
+    JitRuntime(CompilationEngine compiler, CodeCache codeCache, int compilationThreadBound) {
+        this.codeCache = codeCache;
+        this.compileStats = new TierStatistics();
+        this.executeStats = new TierStatistics();
+        this.profiler = new HotnessProfiler();
+        this.compilationService = new CompilationService(compiler, codeCache, compileStats, profiler::globalCount,
+                CompilationBudget.fromSystemProperty(), compilationThreadBound);
+        this.tracing = Tracing.of(compiler);
+        this.tieringPolicy = L1SkipTieringPolicy.withDefaults(
+                new ThresholdTieringPolicy(SolutionThread.L1_THRESHOLD, SolutionThread.L2_THRESHOLD),
+                SolutionThread.L2_THRESHOLD);
+    }
+
+    /**
+     * @return runtime shared by all user threads which use the same {@code compiler}, with its own unbounded
+     * {@link CodeCache}
+     */
+    public static JitRuntime forEngine(CompilationEngine compiler, int compilationThreadBound) {
+        return forEngine(compiler, compilationThreadBound, null);
+    }
+
+    /**
+     * Same as {@link #forEngine(CompilationEngine, int)}, but the runtime is created with given {@code codeCache}
+     * (e.g. a bounded one) unless it already exists. Must be called before user threads of the {@code compiler} are
+     * created, and the caller must keep the returned runtime reachable until then.
+     *
+     * @param codeCache {@code null} for a new unbounded cache
+     */
+    public static JitRuntime forEngine(CompilationEngine compiler, int compilationThreadBound, CodeCache codeCache) {
+        synchronized (runtimes) {
+            final WeakReference<JitRuntime> ref = runtimes.get(compiler);
+            final JitRuntime existing = (ref != null) ? ref.get() : null;
+            if (existing != null) {
+                assert existing.compilationService.threadBound() <= compilationThreadBound;
+                return existing;
+            }
+            final JitRuntime created = new JitRuntime(compiler, (codeCache != null) ? codeCache : new CodeCache(),
+                    compilationThreadBound);
+            runtimes.put(compiler, new WeakReference<>(created));
+            return created;
+        }
+    }
+
+    /**
+     * Appends current profile to the {@code file}, see {@link ProfileSnapshot} for the format.
+     */
+    public void saveProfile(Path file) throws IOException {
+        ProfileSnapshot.capture(this).appendTo(file);
+    }
+
+    /**
+     * Schedules background compilations of the methods which were hot when the {@code file} was saved. Should be
+     * called right after the runtime is created.
+     *
+     * @param resolver maps {@link MethodID#id()} back to the method, returns {@code null} for unknown ids
+     * @return number of scheduled compilations
+     */
+    public int warmStart(Path file, LongFunction<MethodID> resolver) throws IOException {
+        return ProfileSnapshot.read(file).warmUp(compilationService, resolver, WARM_START_MIN_INVOCATIONS);
+    }
+}
@@ -0,0 +1,179 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.TieringPolicy;
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorator which lets methods go straight from the interpreter to L2 when L2 code is expected to arrive sooner than L1
+ * code would pay for itself.
+ * <br>
+ * When the {@code delegate} first wants L1 for an interpreted method, the decision is postponed for up to
+ * {@link #SAMPLE_INTERVAL} local invocations to measure the invocation rate of the method. Then
+ * <pre>
+ *     l1Ready  = queueNanos(L1) + compileNanos(L1)
+ *     l2Ready  = (l2Invocations - invocations) / rate + queueNanos(L2) + compileNanos(L2)
+ *     l1Saving = rate * (l2Ready - l1Ready) * (executeNanos(INTERPRETER) - executeNanos(L1))
+ * </pre>
+ * and L1 is skipped (the method is compiled by L2 right away) if {@code l1Saving < payoff * compileNanos(L1)}. Costs
+ * come from {@link Profile}, until they are measured defaults are used, like in {@link CostModelTieringPolicy}.
+ * <br>
+ * The decision is made once per method and never revoked. Decisions are counted in {@link #skipped()} and
+ * {@link #kept()}. {@code delegate} decisions other than "L1 for interpreted method" pass through untouched.
+ * <br>
+ * Weak points: rate is measured over a short interval right after the method became warm, so a method which is hot only
+ * in bursts may be sent to L2 too early.
+ */
+public final class L1SkipTieringPolicy implements TieringPolicy {
+
+    static final int SAMPLE_INTERVAL = 64;
+
+    private static final class Estimate {
+        final long methodId;
+        final long startNanos;
+        final long startInvocations;
+        volatile Tier decision; // null while measuring
+
+        Estimate(long methodId, long startNanos, long startInvocations) {
+            this.methodId = methodId;
+            this.startNanos = startNanos;
+            this.startInvocations = startInvocations;
+        }
+    }
+
+    private final TieringPolicy delegate;
+    private final long l2Invocations;
+    private final double payoff;
+    private final long[] defaultCompileNanos;
+    private final long[] defaultExecuteNanos;
+    private final DenseLongTable<Estimate> estimates = new DenseLongTable<>(64, e -> e.methodId);
+
+    private final AtomicLong skipped = new AtomicLong(0);
+    private final AtomicLong kept = new AtomicLong(0);
+
+    /**
+     * @param l2Invocations       number of invocations at which {@code delegate} usually wants L2
+     * @param payoff              how many times time saved by L1 must exceed its compilation time, {@code > 0}
+     * @param defaultCompileNanos compile costs of {@code [INTERPRETER, L1, L2]} until measured
+     * @param defaultExecuteNanos execute costs of {@code [INTERPRETER, L1, L2]} until measured
+     */
+    public L1SkipTieringPolicy(TieringPolicy delegate, long l2Invocations, double payoff,
+                               long[] defaultCompileNanos, long[] defaultExecuteNanos) {
+        if (l2Invocations <= 0) {
+            throw new IllegalArgumentException("L2 invocations must be positive: " + l2Invocations);
+        }
+        if (!(payoff > 0)) {
+            throw new IllegalArgumentException("Payoff must be positive: " + payoff);
+        }
+        if (defaultCompileNanos.length != Tier.values().length || defaultExecuteNanos.length != Tier.values().length) {
+            throw new IllegalArgumentException("Default costs must be provided for every tier");
+        }
+        this.delegate = delegate;
+        this.l2Invocations = l2Invocations;
+        this.payoff = payoff;
+        this.defaultCompileNanos = defaultCompileNanos.clone();
+        this.defaultExecuteNanos = defaultExecuteNanos.clone();
+    }
+
+    /**
+     * Policy with the default costs of {@link CostModelTieringPolicy#withDefaults}.
+     */
+    public static L1SkipTieringPolicy withDefaults(TieringPolicy delegate, long l2Invocations) {
+        return new L1SkipTieringPolicy(delegate, l2Invocations, 2.0,
+                new long[]{0, 10_000, 1_000_000},
+                new long[]{100, 30, 10});
+    }
+
+    @Override
+    public Tier decide(MethodID method, Profile profile) {
+        final Tier wanted = delegate.decide(method, profile);
+        if (wanted != Tier.L1 || profile.available() != Tier.INTERPRETER) {
+            return wanted;
+        }
+
+        final long methodId = method.id();
+        final long invocations = Math.max(profile.localInvocations(), profile.globalInvocations());
+        Estimate e = estimates.get(methodId);
+        if (e == null) {
+            e = estimates.computeIfAbsent(methodId, id -> new Estimate(id, System.nanoTime(), invocations));
+        }
+
+        final Tier decision = e.decision;
+        if (decision != null) {
+            return decision;
+        }
+        if ((profile.localInvocations() & (SAMPLE_INTERVAL - 1)) == 0) {
+            estimate(e, profile, invocations, System.nanoTime());
+            if (e.decision != null) {
+                return e.decision;
+            }
+        }
+        return Tier.INTERPRETER;
+    }
+
+    /**
+     * @return number of methods which were sent to L2 without L1
+     */
+    public long skipped() {
+        return skipped.get();
+    }
+
+    /**
+     * @return number of methods for which L1 was found worth compiling
+     */
+    public long kept() {
+        return kept.get();
+    }
+
+    /**
+     * @return decision made for the method, or {@code null} if it was not made yet
+     */
+    public Tier decision(long methodId) {
+        final Estimate e = estimates.get(methodId);
+        return (e == null) ? null : e.decision;
+    }
+
+    private void estimate(Estimate e, Profile profile, long invocations, long now) {
+        final long elapsed = now - e.startNanos;
+        final long grown = invocations - e.startInvocations;
+        if (elapsed <= 0 || grown <= 0) {
+            return;
+        }
+        final double rate = (double) grown / elapsed;
+
+        final long l1Ready = queueNanos(profile, Tier.L1) + compileNanos(profile, Tier.L1);
+        final double l2Ready = Math.max(0, l2Invocations - invocations) / rate
+                + queueNanos(profile, Tier.L2) + compileNanos(profile, Tier.L2);
+        final long gain = executeNanos(profile, Tier.INTERPRETER) - executeNanos(profile, Tier.L1);
+        final double saving = rate * Math.max(0, l2Ready - l1Ready) * gain;
+        final boolean skip = saving < payoff * compileNanos(profile, Tier.L1);
+
+        synchronized (e) {
+            if (e.decision != null) {
+                return;
+            }
+            e.decision = skip ? Tier.L2 : Tier.L1;
+        }
+        (skip ? skipped : kept).incrementAndGet();
+    }
+
+    private long compileNanos(Profile profile, Tier tier) {
+        final long measured = profile.compileNanos(tier);
+        return (measured < 0) ? defaultCompileNanos[tier.ordinal()] : measured;
+    }
+
+    private long executeNanos(Profile profile, Tier tier) {
+        final long measured = profile.executeNanos(tier);
+        return (measured < 0) ? defaultExecuteNanos[tier.ordinal()] : measured;
+    }
+
+    private static long queueNanos(Profile profile, Tier tier) {
+        return Math.max(0, profile.queueNanos(tier));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("L1SkipTieringPolicy(l2 = %d, payoff = %.2f, delegate = %s)", l2Invocations, payoff, delegate);
+    }
+}
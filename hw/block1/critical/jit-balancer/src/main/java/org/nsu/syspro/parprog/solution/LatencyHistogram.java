@@ -0,0 +1,122 @@
+package org.nsu.syspro.parprog.solution;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of durations in nanoseconds, in the spirit of HdrHistogram.
+ * <br>
+ * Values below {@code 2^SUB_BITS} are stored exactly; larger values fall into one of {@code 2^SUB_BITS} linear
+ * sub-buckets of their power-of-two range, so the relative error is below {@code 1 / 2^SUB_BITS} (12.5%).
+ * Values above {@code 2^MAX_EXPONENT} ns (about 18 minutes) are clamped into the last bucket.
+ * <br>
+ * {@link #record} is a single atomic increment, it never allocates and never blocks. Readers see a weakly consistent
+ * view: percentiles computed while recording is in progress may miss the latest values.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        buckets.incrementAndGet(indexOf(Math.max(0, nanos)));
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += buckets.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @param percentile in {@code [0, 100]}
+     * @return lower bound of the bucket which contains given percentile, {@code 0} for empty histogram
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be in [0, 100]: " + percentile);
+        }
+        final long[] snapshot = snapshot();
+        long total = 0;
+        for (long c : snapshot) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return lowerBound(i);
+            }
+        }
+        return lowerBound(BUCKETS - 1);
+    }
+
+    /**
+     * @return approximate mean (every value is replaced by the lower bound of its bucket)
+     */
+    public double mean() {
+        final long[] snapshot = snapshot();
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += snapshot[i];
+            sum += (double) snapshot[i] * lowerBound(i);
+        }
+        return (total == 0) ? 0 : sum / total;
+    }
+
+    public long max() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (buckets.get(i) != 0) {
+                return lowerBound(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return JSON object with count, mean and common percentiles
+     */
+    public String toJson() {
+        return String.format("{\"count\": %d, \"mean\": %.1f, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"p999\": %d, \"max\": %d}",
+                count(), mean(), percentile(50), percentile(90), percentile(99), percentile(99.9), max());
+    }
+
+    private long[] snapshot() {
+        final long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = buckets.get(i);
+        }
+        return result;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        final int sub = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+}
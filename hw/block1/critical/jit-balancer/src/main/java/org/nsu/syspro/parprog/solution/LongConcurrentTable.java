@@ -0,0 +1,129 @@
+package org.nsu.syspro.parprog.solution;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Insert-only concurrent map from primitive {@code long} keys to values.
+ * <br>
+ * {@link #get(long)} is lock-free and allocation-free: one volatile read of the current table and linear probing over
+ * {@link AtomicReferenceArray} slots. Slots are written once ({@code null -> value}) and values are never removed, so
+ * a reader never sees a slot change under its feet.
+ * <br>
+ * Writers ({@link #computeIfAbsent}) are serialized by the monitor of the table. The table grows by copying into a new
+ * table which is then published by a volatile write. A reader which still holds the old table may miss a value
+ * inserted after the switch: callers must treat it as a regular miss.
+ */
+final class LongConcurrentTable<V> {
+
+    /**
+     * Values stored in the table must know their keys.
+     */
+    interface KeyOf<V> {
+        long keyOf(V value);
+    }
+
+    private volatile AtomicReferenceArray<V> table;
+    private final KeyOf<V> keyOf;
+    private int size; // guarded by this
+
+    LongConcurrentTable(int initialCapacity, KeyOf<V> keyOf) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + initialCapacity);
+        }
+        this.table = new AtomicReferenceArray<>(tableSizeFor(initialCapacity));
+        this.keyOf = keyOf;
+    }
+
+    /**
+     * Lock-free, allocation-free lookup.
+     *
+     * @return value or {@code null} if nothing was inserted for the key
+     */
+    V get(long key) {
+        final AtomicReferenceArray<V> t = table;
+        final int mask = t.length() - 1;
+        for (int i = indexFor(key, mask); ; i = (i + 1) & mask) {
+            final V v = t.get(i);
+            if (v == null || keyOf.keyOf(v) == key) {
+                return v;
+            }
+        }
+    }
+
+    /**
+     * Blocking insertion, must not be used on latency-critical paths.
+     */
+    synchronized V computeIfAbsent(long key, LongFunction<V> factory) {
+        final V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (2 * (size + 1) > table.length()) {
+            table = grow(table);
+        }
+
+        final V created = factory.apply(key);
+        assert keyOf.keyOf(created) == key;
+        insert(table, created);
+        size++;
+        return created;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Weakly consistent iteration: values inserted concurrently may be missed.
+     */
+    void forEach(Consumer<? super V> action) {
+        final AtomicReferenceArray<V> t = table;
+        for (int i = 0; i < t.length(); i++) {
+            final V v = t.get(i);
+            if (v != null) {
+                action.accept(v);
+            }
+        }
+    }
+
+    private AtomicReferenceArray<V> grow(AtomicReferenceArray<V> old) {
+        final AtomicReferenceArray<V> bigger = new AtomicReferenceArray<>(old.length() * 2);
+        for (int i = 0; i < old.length(); i++) {
+            final V v = old.get(i);
+            if (v != null) {
+                insert(bigger, v);
+            }
+        }
+        return bigger;
+    }
+
+    private void insert(AtomicReferenceArray<V> t, V value) {
+        final long key = keyOf.keyOf(value);
+        final int mask = t.length() - 1;
+        for (int i = indexFor(key, mask); ; i = (i + 1) & mask) {
+            final V v = t.get(i);
+            if (v == null) {
+                t.set(i, value);
+                return;
+            }
+            assert keyOf.keyOf(v) != key;
+        }
+    }
+
+    static int indexFor(long key, int mask) {
+        // ids are usually dense small numbers, spread them with Fibonacci hashing
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    static int tableSizeFor(int capacity) {
+        int n = 1;
+        while (n < 2 * capacity) {
+            n <<= 1;
+        }
+        return n;
+    }
+}
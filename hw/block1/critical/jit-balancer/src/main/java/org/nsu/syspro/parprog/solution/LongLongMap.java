@@ -0,0 +1,109 @@
+package org.nsu.syspro.parprog.solution;
+
+/**
+ * Thread-unsafe open-addressing map from primitive {@code long} keys to positive {@code long} counters.
+ * <br>
+ * Intended to be owned by a single thread (e.g. a field of {@link org.nsu.syspro.parprog.UserThread}).
+ * Neither {@link #get} nor {@link #increment} allocate unless the map has to grow, so a bounded number of methods
+ * (`Limited-methods`) means allocation-free counting in the steady state.
+ * <br>
+ * Zero value marks an empty slot, that is why only positive counters are supported and there is no {@code remove}.
+ */
+public final class LongLongMap {
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    public LongLongMap() {
+        this(16);
+    }
+
+    public LongLongMap(int initialCapacity) {
+        final int n = LongConcurrentTable.tableSizeFor(initialCapacity);
+        keys = new long[n];
+        values = new long[n];
+    }
+
+    /**
+     * @return counter value or {@code 0} if the key is absent
+     */
+    public long get(long key) {
+        final int mask = keys.length - 1;
+        for (int i = LongConcurrentTable.indexFor(key, mask); ; i = (i + 1) & mask) {
+            if (values[i] == 0) {
+                return 0;
+            }
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+    }
+
+    /**
+     * Increments the counter of {@code key} and returns the new value.
+     */
+    public long increment(long key) {
+        return add(key, 1);
+    }
+
+    /**
+     * Adds {@code delta} to the counter of {@code key} and returns the new value, which must stay positive.
+     */
+    public long add(long key, long delta) {
+        assert delta != 0;
+        final int mask = keys.length - 1;
+        for (int i = LongConcurrentTable.indexFor(key, mask); ; i = (i + 1) & mask) {
+            if (values[i] == 0) {
+                assert delta > 0;
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                    return add(key, delta);
+                }
+                keys[i] = key;
+                values[i] = delta;
+                size++;
+                return delta;
+            }
+            if (keys[i] == key) {
+                values[i] += delta;
+                assert values[i] > 0;
+                return values[i];
+            }
+        }
+    }
+
+    /**
+     * Sets the value of {@code key} to positive {@code value}.
+     */
+    public void put(long key, long value) {
+        assert value > 0;
+        final long old = get(key);
+        if (old != value) {
+            add(key, value - old);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        final int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] == 0) {
+                continue;
+            }
+            int i = LongConcurrentTable.indexFor(oldKeys[j], mask);
+            while (values[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.nsu.syspro.parprog.solution;
+
+/**
+ * Thread-unsafe open-addressing map from primitive {@code long} keys to non-null values, the object counterpart of
+ * {@link LongLongMap}.
+ * <br>
+ * Intended to be owned by a single thread. {@link #get} never allocates, {@link #put} allocates only when the map has to
+ * grow. {@code null} value marks an empty slot, so there is no {@code remove}.
+ */
+public final class LongObjectMap<V> {
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    public LongObjectMap() {
+        this(16);
+    }
+
+    public LongObjectMap(int initialCapacity) {
+        final int n = LongConcurrentTable.tableSizeFor(initialCapacity);
+        keys = new long[n];
+        values = new Object[n];
+    }
+
+    /**
+     * @return value or {@code null} if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        final int mask = keys.length - 1;
+        for (int i = LongConcurrentTable.indexFor(key, mask); ; i = (i + 1) & mask) {
+            if (values[i] == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+    }
+
+    public void put(long key, V value) {
+        assert value != null;
+        final int mask = keys.length - 1;
+        for (int i = LongConcurrentTable.indexFor(key, mask); ; i = (i + 1) & mask) {
+            if (values[i] == null) {
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                    put(key, value);
+                    return;
+                }
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        final int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] == null) {
+                continue;
+            }
+            int i = LongConcurrentTable.indexFor(oldKeys[j], mask);
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+}
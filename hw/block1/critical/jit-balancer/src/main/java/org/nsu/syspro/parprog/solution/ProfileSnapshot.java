@@ -0,0 +1,205 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.LongFunction;
+
+/**
+ * Immutable snapshot of the JIT profile: global invocation counter and the best published tier of every method.
+ * Persisted between runs to warm up the JIT ahead of the first invocations, see {@link #warmUp}.
+ * <br>
+ * File format (big-endian, memory-mapped):
+ * <pre>
+ *     header:  int MAGIC | int VERSION | long committedBytes
+ *     segment: int SEGMENT_MAGIC | int records | long createdMillis | records * (long methodId | long invocations | int tier)
+ *     ...
+ * </pre>
+ * Every {@link #appendTo dump} appends a new segment and only then moves {@code committedBytes} in the header, so a
+ * crash in the middle of a dump leaves the previous content readable. Concurrent dumps of different processes are
+ * serialized by a file lock. {@link #read Reading} merges all committed segments, the latest segment wins.
+ * <br>
+ * Weak points: the file grows by one segment per dump and is never compacted, and ids in the file are meaningful only
+ * as long as the VM assigns the same {@link MethodID#id()} to the same method across runs.
+ */
+public final class ProfileSnapshot {
+
+    static final int MAGIC = 0x4A495450; // "JITP"
+    static final int VERSION = 1;
+    static final int SEGMENT_MAGIC = 0x5345474D; // "SEGM"
+
+    static final int HEADER_BYTES = 16;
+    static final int SEGMENT_HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 20;
+
+    private final long[] methodIds;
+    private final long[] invocations;
+    private final int[] tiers;
+
+    private ProfileSnapshot(long[] methodIds, long[] invocations, int[] tiers) {
+        assert methodIds.length == invocations.length && methodIds.length == tiers.length;
+        this.methodIds = methodIds;
+        this.invocations = invocations;
+        this.tiers = tiers;
+    }
+
+    /**
+     * Captures current profile of {@code runtime}: every method which was either flushed to the global profile or
+     * compiled. Methods are ordered from the hottest one.
+     */
+    public static ProfileSnapshot capture(JitRuntime runtime) {
+        final TreeMap<Long, long[]> merged = new TreeMap<>(); // methodId -> {invocations, tier}
+        runtime.profiler.forEachGlobal((methodId, count) -> merged.computeIfAbsent(methodId, k -> new long[2])[0] = count);
+        runtime.codeCache.forEach(e -> {
+            final int level = e.level();
+            if (level > 0) {
+                merged.computeIfAbsent(e.methodId, k -> new long[2])[1] = level;
+            }
+        });
+        return of(merged);
+    }
+
+    /**
+     * Reads all committed segments of the {@code file}, later segments override earlier ones.
+     *
+     * @throws IOException if the file is not a profile or has unsupported version
+     */
+    public static ProfileSnapshot read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) {
+                throw new IOException("Not a JIT profile, file is too short: " + file);
+            }
+            final long committed = readHeader(ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES), ch.size(), file);
+            final MappedByteBuffer data = ch.map(FileChannel.MapMode.READ_ONLY, 0, committed);
+            data.position(HEADER_BYTES);
+
+            final TreeMap<Long, long[]> merged = new TreeMap<>();
+            while (data.position() < committed) {
+                if (data.remaining() < SEGMENT_HEADER_BYTES || data.getInt() != SEGMENT_MAGIC) {
+                    throw new IOException("Corrupted JIT profile segment at " + data.position() + ": " + file);
+                }
+                final int records = data.getInt();
+                data.getLong(); // createdMillis
+                if (records < 0 || (long) records * RECORD_BYTES > data.remaining()) {
+                    throw new IOException("Corrupted JIT profile segment at " + data.position() + ": " + file);
+                }
+                for (int i = 0; i < records; i++) {
+                    final long methodId = data.getLong();
+                    final long count = data.getLong();
+                    final int tier = data.getInt();
+                    merged.put(methodId, new long[]{count, tier});
+                }
+            }
+            return of(merged);
+        }
+    }
+
+    /**
+     * Appends this snapshot as a new segment of the {@code file}, creates the file if necessary.
+     */
+    public void appendTo(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock ignored = ch.lock()) {
+            final boolean fresh = ch.size() == 0;
+            final MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            final long committed;
+            if (fresh) {
+                header.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, HEADER_BYTES);
+                committed = HEADER_BYTES;
+            } else {
+                committed = readHeader(header, ch.size(), file);
+            }
+
+            final long segmentBytes = SEGMENT_HEADER_BYTES + (long) size() * RECORD_BYTES;
+            final MappedByteBuffer segment = ch.map(FileChannel.MapMode.READ_WRITE, committed, segmentBytes);
+            segment.putInt(SEGMENT_MAGIC).putInt(size()).putLong(System.currentTimeMillis());
+            for (int i = 0; i < size(); i++) {
+                segment.putLong(methodIds[i]).putLong(invocations[i]).putInt(tiers[i]);
+            }
+            segment.force();
+
+            header.putLong(8, committed + segmentBytes);
+            header.force();
+        }
+    }
+
+    /**
+     * Schedules background compilations of methods which were compiled (or at least as hot as
+     * {@code minInvocations}) when the snapshot was taken, hottest first. Requests of methods which do not get hot in
+     * this run are cancelled by the compile queue.
+     *
+     * @param resolver maps {@link MethodID#id()} back to the method, returns {@code null} for unknown ids
+     * @return number of scheduled compilations
+     */
+    public int warmUp(CompilationService compilationService, LongFunction<MethodID> resolver, long minInvocations) {
+        int scheduled = 0;
+        for (int i = 0; i < size(); i++) {
+            final int tier = (tiers[i] > 0) ? tiers[i] : (invocations[i] >= minInvocations ? 1 : 0);
+            if (tier == 0) {
+                continue;
+            }
+            final MethodID method = resolver.apply(methodIds[i]);
+            if (method != null && method.id() == methodIds[i]) {
+                compilationService.submit(method, tier);
+                scheduled++;
+            }
+        }
+        return scheduled;
+    }
+
+    public int size() {
+        return methodIds.length;
+    }
+
+    public long methodId(int i) {
+        return methodIds[i];
+    }
+
+    public long invocations(int i) {
+        return invocations[i];
+    }
+
+    /**
+     * @return best published level of the method, {@code 0} if it was not compiled
+     */
+    public int tier(int i) {
+        return tiers[i];
+    }
+
+    private static long readHeader(ByteBuffer header, long fileSize, Path file) throws IOException {
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a JIT profile: " + file);
+        }
+        final int version = header.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported JIT profile version " + version + ", expected " + VERSION + ": " + file);
+        }
+        final long committed = header.getLong(8);
+        if (committed < HEADER_BYTES || committed > fileSize) {
+            throw new IOException("Corrupted JIT profile header, committed " + committed + " of " + fileSize + " bytes: " + file);
+        }
+        return committed;
+    }
+
+    private static ProfileSnapshot of(Map<Long, long[]> merged) {
+        final List<Map.Entry<Long, long[]>> sorted = new ArrayList<>(merged.entrySet());
+        sorted.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        final int n = sorted.size();
+        final long[] ids = new long[n];
+        final long[] counts = new long[n];
+        final int[] tiers = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = sorted.get(i).getKey();
+            counts[i] = sorted.get(i).getValue()[0];
+            tiers[i] = (int) sorted.get(i).getValue()[1];
+        }
+        return new ProfileSnapshot(ids, counts, tiers);
+    }
+}
@@ -0,0 +1,96 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.TieringPolicy;
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Tiering by invocation rate: method deserves L1 (L2) when it was invoked at least {@code l1Invocations}
+ * ({@code l2Invocations}) times during the last {@code windowNanos}, in all threads.
+ * <br>
+ * Rate is estimated by the sliding window counter approximation: invocations of the previous fixed window are
+ * weighted by the part of it which still overlaps the sliding window, plus invocations of the current fixed window.
+ * Clock is read only once per {@link #SAMPLE_INTERVAL} local invocations, all other calls return the last decision.
+ * <br>
+ * Decisions never go down: once a method was hot enough for some tier, a later slowdown does not revoke it.
+ * <br>
+ * Weak points: window roll-over is elected by CAS but the counters of the window are updated without mutual exclusion,
+ * so concurrent samplers may see a slightly inconsistent estimate; the first invocation of every method may allocate
+ * its window more than once, losers are dropped.
+ */
+public final class RateTieringPolicy implements TieringPolicy {
+
+    static final int SAMPLE_INTERVAL = 64;
+
+    private static final class Window {
+        private static final AtomicLongFieldUpdater<Window> START = AtomicLongFieldUpdater.newUpdater(Window.class, "start");
+
+        final long methodId;
+        volatile long start;
+        volatile long countAtStart;
+        volatile long previous;
+        volatile Tier decision = Tier.INTERPRETER;
+
+        Window(long methodId, long start) {
+            this.methodId = methodId;
+            this.start = start;
+        }
+    }
+
+    private final long windowNanos;
+    private final long l1Invocations;
+    private final long l2Invocations;
+    private final DenseLongTable<Window> windows = new DenseLongTable<>(64, w -> w.methodId);
+
+    public RateTieringPolicy(long windowNanos, long l1Invocations, long l2Invocations) {
+        if (windowNanos <= 0) {
+            throw new IllegalArgumentException("Window must be positive: " + windowNanos);
+        }
+        if (l1Invocations <= 0 || l2Invocations < l1Invocations) {
+            throw new IllegalArgumentException("Expected 0 < l1Invocations <= l2Invocations, got " + l1Invocations + " and " + l2Invocations);
+        }
+        this.windowNanos = windowNanos;
+        this.l1Invocations = l1Invocations;
+        this.l2Invocations = l2Invocations;
+    }
+
+    @Override
+    public Tier decide(MethodID method, Profile profile) {
+        final long methodId = method.id();
+        Window w = windows.get(methodId);
+        if (w == null) {
+            w = windows.computeIfAbsent(methodId, id -> new Window(id, System.nanoTime()));
+        }
+        if ((profile.localInvocations() & (SAMPLE_INTERVAL - 1)) == 0) {
+            sample(w, Math.max(profile.localInvocations(), profile.globalInvocations()), System.nanoTime());
+        }
+        return w.decision;
+    }
+
+    private void sample(Window w, long invocations, long now) {
+        final long start = w.start;
+        long elapsed = now - start;
+        if (elapsed >= windowNanos && Window.START.compareAndSet(w, start, now)) {
+            w.previous = (elapsed >= 2 * windowNanos) ? 0 : invocations - w.countAtStart;
+            w.countAtStart = invocations;
+            elapsed = 0;
+        } else if (elapsed >= windowNanos) {
+            return; // somebody else rolls the window right now
+        }
+
+        final long current = invocations - w.countAtStart;
+        final long estimate = current + (long) (w.previous * ((double) (windowNanos - elapsed) / windowNanos));
+        final Tier tier = (estimate >= l2Invocations)
+                ? Tier.L2
+                : (estimate >= l1Invocations ? Tier.L1 : Tier.INTERPRETER);
+        if (tier.compareTo(w.decision) > 0) {
+            w.decision = tier;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RateTieringPolicy(window = %dns, l1 = %d, l2 = %d)", windowNanos, l1Invocations, l2Invocations);
+    }
+}
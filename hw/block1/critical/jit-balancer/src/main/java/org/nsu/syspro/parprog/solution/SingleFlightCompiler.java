@@ -0,0 +1,274 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.TieringPolicy.Tier;
+import org.nsu.syspro.parprog.external.CompilationEngine;
+import org.nsu.syspro.parprog.external.CompiledMethod;
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Single-flight facade of {@link CompilationEngine}: concurrent requests to compile the same method by the same JIT
+ * level are coalesced into one compilation, later requesters attach to the {@link CompletableFuture} of the compilation
+ * which is already in flight.
+ * <br>
+ * Requesters are never blocked by {@link #compile}: they get a future and may keep interpreting until the result is
+ * {@link CodeCache#publish published}. Blocking on the future is a separate decision of the caller.
+ * <br>
+ * In-flight compilations live in the per-method {@link CodeCache.Entry}, a new flight is registered by CAS on its empty
+ * flight slot, so neither requesters nor compiler threads take locks (see {@link CodeCache.State} for the resulting
+ * per-method state machine). Protocol (for every {@code (method, level)}):
+ * <ol>
+ *     <li> compilation publishes its result to {@link CodeCache}, then completes the future, then releases the flight
+ *     slot;
+ *     <li> requester looks into the flight slot first and into the code second, so "not in flight" implies "already
+ *     published or never requested";
+ *     <li> requester which claimed the flight slot re-checks the code, because another flight may have finished
+ *     between steps 2 and 3.
+ * </ol>
+ * Hence every {@code (method, level)} is compiled at most once as long as published code stays in the cache. Code
+ * evicted from a bounded cache may be compiled again, but never more than {@link CodeCache.Entry#COMPILE_BUDGET} times
+ * in total (`CPU-bound-compilation`): once it is used up, requests get no code instead.
+ * <br>
+ * Where the compilation runs is decided by {@link Scheduler}: it could be a background pool (see
+ * {@link CompilationService}) or even the requesting thread itself ({@code (method, level, task) -> task.run()}), which
+ * makes the facility usable by any {@link org.nsu.syspro.parprog.UserThread} implementation. Scheduled tasks are
+ * {@link Compilation}s: a scheduler which collects several of them may run them together by {@link #compileBatch}.
+ */
+public final class SingleFlightCompiler {
+
+    /**
+     * Runs compilation task of the {@code method} by JIT {@code level} somewhere, sometime.
+     */
+    public interface Scheduler {
+        void schedule(MethodID method, int level, Runnable compilation);
+    }
+
+    /**
+     * Learns when every compilation of a {@link #compileBatch batch} began.
+     */
+    public interface StartListener {
+        /**
+         * Called once per compilation, when its result (or failure) is reported by the engine.
+         *
+         * @param startNanos {@link System#nanoTime()} of the previous result of the batch, or of the batch start
+         */
+        void started(Compilation compilation, long startNanos);
+    }
+
+    private final CompilationEngine compiler;
+    private final CodeCache codeCache;
+    private final TierStatistics compileStats;
+    private final Scheduler scheduler;
+
+    public SingleFlightCompiler(CompilationEngine compiler, CodeCache codeCache, TierStatistics compileStats, Scheduler scheduler) {
+        this.compiler = compiler;
+        this.codeCache = codeCache;
+        this.compileStats = compileStats;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Requests compilation of {@code method} by JIT {@code level} unless the same or better code is already published
+     * or the same compilation is already in flight. Never blocks the caller (unless {@link Scheduler} does).
+     *
+     * @return future of the compilation, completed with the best known code if nothing had to be compiled, or with
+     * {@code null} if the code of this level was evicted and the method may not be compiled by this level anymore
+     */
+    public CompletableFuture<CompiledMethod> compile(MethodID method, int level) {
+        assert level == 1 || level == 2;
+        final CodeCache.Entry entry = codeCache.entry(method.id());
+        while (true) {
+            final CompletableFuture<CompiledMethod> running = entry.flight(level);
+            if (running != null) {
+                return running;
+            }
+
+            final CodeCache.CompiledCode published = entry.code();
+            if (published != null && published.level >= level) {
+                return CompletableFuture.completedFuture(published.method);
+            }
+
+            final CompletableFuture<CompiledMethod> flight = new CompletableFuture<>();
+            if (!entry.claim(level, flight)) {
+                if (!entry.mayCompile(level)) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                continue; // somebody else has just claimed it, attach to that flight
+            }
+
+            final CodeCache.CompiledCode publishedMeanwhile = entry.code();
+            if (publishedMeanwhile != null && publishedMeanwhile.level >= level) {
+                flight.complete(publishedMeanwhile.method);
+                entry.release(level, flight);
+                return flight;
+            }
+
+            scheduler.schedule(method, level, new Compilation(method, level, flight, entry));
+            return flight;
+        }
+    }
+
+    /**
+     * @return future of the compilation which is in flight right now, or {@code null}
+     */
+    public CompletableFuture<CompiledMethod> inFlight(long methodId, int level) {
+        final CodeCache.Entry entry = codeCache.lookup(methodId);
+        return (entry == null) ? null : entry.flight(level);
+    }
+
+    /**
+     * Drops the flight of {@code (method, level)} which was scheduled but will never run, its future completes with
+     * {@link CancellationException}. Subsequent {@link #compile} starts a new flight.
+     */
+    public void cancel(MethodID method, int level) {
+        final CodeCache.Entry entry = codeCache.lookup(method.id());
+        final CompletableFuture<CompiledMethod> flight = (entry == null) ? null : entry.flight(level);
+        if (flight != null && entry.release(level, flight)) {
+            flight.completeExceptionally(new CancellationException("MethodID(" + method.id() + ") went cold before L" + level + " compilation"));
+        }
+    }
+
+    /**
+     * Runs scheduled compilations of the same {@code level} by one batch call of {@link CompilationEngine}. Every result
+     * is published and its flight is completed as soon as the engine reports it.
+     * <br>
+     * Duration of a compilation in the batch is measured from the previous result, so {@link TierStatistics} stay
+     * per-method. The first failure is rethrown after the whole batch is done, like a single compilation does; a
+     * checked exception reported by the engine is rethrown wrapped into {@link CompletionException}.
+     */
+    public void compileBatch(int level, List<Compilation> batch) {
+        compileBatch(level, batch, null);
+    }
+
+    /**
+     * Same as {@link #compileBatch(int, List)}, and reports the start of every compilation of the batch, which is the
+     * previous result: the engine does not tell when it moves on to the next method.
+     *
+     * @param starts {@code null} if nobody is interested
+     */
+    public void compileBatch(int level, List<Compilation> batch, StartListener starts) {
+        assert level == 1 || level == 2;
+        final List<MethodID> methods = new ArrayList<>(batch.size());
+        for (Compilation c : batch) {
+            assert c.level == level;
+            c.entry.compiling(level);
+            methods.add(c.method);
+        }
+
+        final BatchResults results = new BatchResults(level, batch, starts);
+        try {
+            if (level == 2) {
+                compiler.compile_l2(methods, results);
+            } else {
+                compiler.compile_l1(methods, results);
+            }
+        } catch (RuntimeException | Error e) {
+            results.failure = e;
+            throw e;
+        } finally {
+            for (Compilation c : batch) {
+                if (!c.flight.isDone()) {
+                    results.started(c);
+                    c.flight.completeExceptionally((results.failure != null)
+                            ? results.failure
+                            : new IllegalStateException("MethodID(" + c.method.id() + ") is missing from the results of L" + level + " batch"));
+                }
+                c.entry.release(level, c.flight);
+            }
+        }
+        if (results.failure != null) {
+            throwUnchecked(results.failure);
+        }
+    }
+
+    private static void throwUnchecked(Throwable t) {
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        // BatchCallback#failed accepts any throwable
+        throw new CompletionException(t);
+    }
+
+    /**
+     * Scheduled compilation of a method, runs alone or as a part of {@link #compileBatch batch}.
+     */
+    public final class Compilation implements Runnable {
+        public final MethodID method;
+        public final int level;
+        private final CompletableFuture<CompiledMethod> flight;
+        private final CodeCache.Entry entry;
+
+        private Compilation(MethodID method, int level, CompletableFuture<CompiledMethod> flight, CodeCache.Entry entry) {
+            this.method = method;
+            this.level = level;
+            this.flight = flight;
+            this.entry = entry;
+        }
+
+        @Override
+        public void run() {
+            compileBatch(level, Collections.singletonList(this));
+        }
+    }
+
+    private final class BatchResults implements CompilationEngine.BatchCallback {
+        private final int level;
+        private final List<Compilation> batch;
+        private final StartListener starts;
+        private long last = System.nanoTime();
+        Throwable failure;
+
+        BatchResults(int level, List<Compilation> batch, StartListener starts) {
+            this.level = level;
+            this.batch = batch;
+            this.starts = starts;
+        }
+
+        @Override
+        public void compiled(MethodID method, CompiledMethod code) {
+            final Compilation c = compilationOf(method);
+            started(c);
+            final long now = System.nanoTime();
+            compileStats.record(Tier.ofLevel(level), now - last);
+            last = now;
+            codeCache.publish(level, code);
+            c.flight.complete(code);
+        }
+
+        @Override
+        public void failed(MethodID method, Throwable error) {
+            final Compilation c = compilationOf(method);
+            started(c);
+            last = System.nanoTime();
+            if (failure == null) {
+                failure = error;
+            }
+            c.flight.completeExceptionally(error);
+        }
+
+        void started(Compilation c) {
+            if (starts != null) {
+                starts.started(c, last);
+            }
+        }
+
+        private Compilation compilationOf(MethodID method) {
+            // batches are small, a scan is cheaper than a map
+            for (Compilation c : batch) {
+                if (c.method.id() == method.id()) {
+                    return c;
+                }
+            }
+            throw new IllegalArgumentException("MethodID(" + method.id() + ") does not belong to the batch");
+        }
+    }
+}
@@ -1,28 +1,263 @@
 package org.nsu.syspro.parprog.solution;
 
+import org.nsu.syspro.parprog.TieringPolicy;
+import org.nsu.syspro.parprog.TieringPolicy.Tier;
 import org.nsu.syspro.parprog.UserThread;
 import org.nsu.syspro.parprog.external.*;
 
-import java.util.*;
-import java.util.concurrent.*;
+import java.util.function.UnaryOperator;
 
+/**
+ * Tiered JIT on top of the {@link JitRuntime} shared by threads of the same compiler: {@link CodeCache}, background
+ * {@link CompilationService} and striped {@link HotnessProfiler}.
+ * <br>
+ * Hot path: {@link InlineCache thread-private inline cache} of compiled code, which resolves the code in a few plain
+ * loads, even deep in recursive method chains. On a miss, {@link CodeCache#code(long) lookup} of the best published
+ * code, which is put into the inline cache. No locks, no thread-local bookkeeping once L2 code is available.
+ * Monotonicity of {@link CodeCache} guarantees `Per-thread-monotonicity`.
+ * <br>
+ * Cached L1 code is trusted while {@link CodeCache#epoch()} stays the same: every call reads the epoch, and only when
+ * it has changed the thread {@link InlineCache#revalidate re-validates} its cached L1 code against the shared cache.
+ * So fresh L2 code is picked up by the very next call of any method, without a shared lookup per call
+ * (`Weak-global-caching`).
+ * <br>
+ * Cold path: method is interpreted (or executed as L1 code) and counted in thread-private {@link HotnessProfiler.Stripe}.
+ * <ul>
+ *     <li> {@link TieringPolicy} decides which tier the method deserves. If it is higher than available and was not
+ *     requested by this thread yet, compilation is {@link CompilationService#submit submitted}, and the thread keeps
+ *     interpreting (or executing L1 code). Default policy is {@link ThresholdTieringPolicy} with
+ *     {@link #L1_THRESHOLD}/{@link #L2_THRESHOLD} under {@link L1SkipTieringPolicy}, shared by all threads of the
+ *     runtime: methods which reach L2 quickly are not compiled by L1 at all.
+ *     <li> {@link #L1_DEADLINE}/{@link #L2_DEADLINE} invocations in this thread: requested code is still not available,
+ *     thread waits for it (for L2 at L1 deadline if L1 was skipped). This is the only blocking place, it is needed for `Eventual-per-thread-progress-1` and
+ *     `Eventual-per-thread-progress-2` regardless of the policy.
+ * </ul>
+ * Compiled code is published by compiler threads, so all user threads immediately benefit from it (`Weak-global-caching`).
+ * <br>
+ * Every {@link #SAMPLE_INTERVAL}-th execution is timed and fed into {@link JitRuntime#executeStats} for cost-aware
+ * policies, and {@link CodeCache#touch touches} executed code for eviction of bounded cache.
+ * <br>
+ * Bounded {@link CodeCache} may evict code which this thread has already executed. Then the thread keeps executing its
+ * own pinned copy of the best code it has ever seen for the method, which preserves `Per-thread-monotonicity`. A thread
+ * which has requested the evicted level forgets the request and asks the policy again, so the method is recompiled if
+ * it is still hot, as long as {@link CodeCache.Entry#COMPILE_BUDGET} allows (`CPU-bound-compilation`). Beyond the budget
+ * threads fall back to their pinned copies, to L1 or to the interpreter. Pins cost one thread-local lookup per call
+ * which misses the inline cache, they are not used with unbounded cache.
+ * <br>
+ * Weak points: deadlines are per-thread while thresholds are global, so a thread which starts invoking a method which is
+ * already hot elsewhere may wait for compilation which was requested long ago but is still queued. With bounded cache,
+ * a thread which never executed the L2 code of a method before it was evicted for good cannot meet
+ * `Eventual-per-thread-progress-2` for it. During warm-up the
+ * epoch changes often and every change costs a re-validation of the cached L1 code.
+ */
 public class SolutionThread extends UserThread {
 
-    // TODO: add fields here!
+    static final long L1_THRESHOLD = 1_000;
+    static final long L1_DEADLINE = 9_000;
+    static final long L2_THRESHOLD = 10_000;
+    static final long L2_DEADLINE = 90_000;
+
+    static final int SAMPLE_INTERVAL = 64;
+
+    private final JitRuntime runtime;
+    private final CodeCache codeCache;
+    private final CompilationService compilationService;
+    private final TieringPolicy policy;
+
+    // thread-private data, accessed from `executeMethod` only
+    private final HotnessProfiler.Stripe profile;
+    private final InlineCache inlineCache = new InlineCache();
+    private final LongLongMap requestedLevels = new LongLongMap(); // level + 1, a forgotten request is 1
+    private final LongObjectMap<CodeCache.CompiledCode> pinned; // null unless code cache is bounded
+    private final CallProfile callProfile = new CallProfile();
+    private final UnaryOperator<CodeCache.CompiledCode> accept;
+    private long seenEpoch = -1;
+    private int sampleCountdown = SAMPLE_INTERVAL;
 
     public SolutionThread(int compilationThreadBound, ExecutionEngine exec, CompilationEngine compiler, Runnable r) {
-        super(compilationThreadBound, exec, compiler, r);
-        // TODO: initialize fields!
+        this(compilationThreadBound, exec, compiler, r, null);
     }
 
+    /**
+     * @param policy {@code null} for the default {@link JitRuntime#tieringPolicy} of the runtime
+     */
+    public SolutionThread(int compilationThreadBound, ExecutionEngine exec, CompilationEngine compiler, Runnable r, TieringPolicy policy) {
+        super(compilationThreadBound, exec, compiler, r);
+        this.runtime = JitRuntime.forEngine(compiler, compilationThreadBound);
+        this.codeCache = runtime.codeCache;
+        this.compilationService = runtime.compilationService;
+        this.policy = (policy != null) ? policy : runtime.tieringPolicy;
+        this.profile = runtime.profiler.newStripe();
+        this.pinned = codeCache.bounded() ? new LongObjectMap<>() : null;
+        this.accept = (pinned == null) ? UnaryOperator.identity() : code -> pin(code.method.id().id(), code);
+    }
 
     @Override
     public ExecutionResult executeMethod(MethodID id) {
-        // TODO: implement me
-        return null;
+        final long methodID = id.id();
+        final long epoch = codeCache.epoch();
+        if (epoch != seenEpoch) {
+            seenEpoch = epoch;
+            inlineCache.revalidate(codeCache, accept);
+        }
+
+        CodeCache.CompiledCode code = inlineCache.get(methodID);
+        if (code == null) {
+            code = codeCache.code(methodID);
+            if (pinned != null) {
+                code = pin(methodID, code);
+            }
+            if (code != null) {
+                inlineCache.put(methodID, code);
+            }
+        }
+        if (code != null && code.level == 2) {
+            return execute(code);
+        }
+
+        final long hotLevel = profile.record(id);
+        if (hotLevel == L1_DEADLINE && code == null) {
+            // L2 requested instead of L1 is as good for progress
+            code = await(id, requested(methodID) == 2 ? 2 : 1);
+        } else if (hotLevel == L2_DEADLINE) {
+            code = await(id, 2);
+        } else {
+            consultPolicy(id, hotLevel, code);
+        }
+
+        if (code != null) {
+            inlineCache.put(methodID, code);
+            return execute(code);
+        }
+        return interpret(id);
+    }
+
+    private void consultPolicy(MethodID id, long hotLevel, CodeCache.CompiledCode code) {
+        final long methodID = id.id();
+        final int available = (code == null) ? 0 : code.level;
+        callProfile.reset(methodID, hotLevel, available);
+        final int wanted = policy.decide(id, callProfile).level();
+        final int requested = requested(methodID);
+        if (pinned != null && requested > available && codeCache.compilable(methodID, requested)) {
+            // the requested code was compiled and evicted (or the request was cancelled), nothing stops a new request
+            requestedLevels.put(methodID, available + 1);
+        }
+        if (wanted > available && wanted > requested(methodID)) {
+            requestedLevels.put(methodID, wanted + 1);
+            compilationService.submit(id, wanted);
+        }
+    }
+
+    /**
+     * @return highest level requested by this thread and not forgotten since, {@code 0} if none
+     */
+    private int requested(long methodID) {
+        return (int) Math.max(0, requestedLevels.get(methodID) - 1);
+    }
+
+    private CodeCache.CompiledCode await(MethodID id, int level) {
+        final long start = System.nanoTime();
+        final CompiledMethod compiled = compilationService.await(id, level);
+        if (runtime.tracing != null) {
+            runtime.tracing.recordAwait(id, level, start, System.nanoTime());
+        }
+        CodeCache.CompiledCode code = codeCache.code(id.id());
+        if (compiled == null) {
+            // evicted for good: whatever is left, the pinned copy, or L1 if nothing is
+            assert pinned != null;
+            if (code == null && level == 2 && pinned.get(id.id()) == null) {
+                return await(id, 1);
+            }
+            return pin(id.id(), code);
+        }
+        if (code == null || code.level < level) {
+            // evicted from bounded cache right after publication
+            assert pinned != null;
+            code = new CodeCache.CompiledCode(level, compiled);
+        }
+        return (pinned != null) ? pin(id.id(), code) : code;
     }
 
-    // TODO: add methods
-    // TODO: add inner classes
-    // TODO: add utility classes in the same package
-}
\ No newline at end of file
+    /**
+     * @return the best of {@code code} and the code pinned by this thread; on ties the pinned one, it is already known
+     * to be executed by this thread
+     */
+    private CodeCache.CompiledCode pin(long methodID, CodeCache.CompiledCode code) {
+        final CodeCache.CompiledCode own = pinned.get(methodID);
+        if (own != null && (code == null || own.level >= code.level)) {
+            return own;
+        }
+        if (code != null) {
+            pinned.put(methodID, code);
+        }
+        return code;
+    }
+
+    private ExecutionResult execute(CodeCache.CompiledCode code) {
+        if (--sampleCountdown > 0) {
+            return exec.execute(code.method);
+        }
+        sampleCountdown = SAMPLE_INTERVAL;
+        codeCache.touch(code.method.id().id());
+        final long start = System.nanoTime();
+        final ExecutionResult result = exec.execute(code.method);
+        runtime.executeStats.record(Tier.ofLevel(code.level), System.nanoTime() - start);
+        return result;
+    }
+
+    private ExecutionResult interpret(MethodID id) {
+        if (--sampleCountdown > 0) {
+            return exec.interpret(id);
+        }
+        sampleCountdown = SAMPLE_INTERVAL;
+        final long start = System.nanoTime();
+        final ExecutionResult result = exec.interpret(id);
+        runtime.executeStats.record(Tier.INTERPRETER, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Reusable view of the profile of the method being invoked, re-filled before every {@link TieringPolicy#decide} call.
+     */
+    private final class CallProfile implements TieringPolicy.Profile {
+        private long methodID;
+        private long localInvocations;
+        private int available;
+
+        void reset(long methodID, long localInvocations, int available) {
+            this.methodID = methodID;
+            this.localInvocations = localInvocations;
+            this.available = available;
+        }
+
+        @Override
+        public long localInvocations() {
+            return localInvocations;
+        }
+
+        @Override
+        public long globalInvocations() {
+            return runtime.profiler.globalCount(methodID);
+        }
+
+        @Override
+        public Tier available() {
+            return Tier.ofLevel(available);
+        }
+
+        @Override
+        public long compileNanos(Tier tier) {
+            return runtime.compileStats.average(tier);
+        }
+
+        @Override
+        public long executeNanos(Tier tier) {
+            return runtime.executeStats.average(tier);
+        }
+
+        @Override
+        public long queueNanos(Tier tier) {
+            return compilationService.queueNanos(tier);
+        }
+    }
+}
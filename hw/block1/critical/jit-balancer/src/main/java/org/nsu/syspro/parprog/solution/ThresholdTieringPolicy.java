@@ -0,0 +1,42 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.TieringPolicy;
+import org.nsu.syspro.parprog.external.MethodID;
+
+/**
+ * Classic counter-based tiering: method deserves L1 after {@code l1Threshold} invocations and L2 after
+ * {@code l2Threshold} invocations. Invocations are counted globally, but the local counter is also taken into account
+ * because the global one lags behind.
+ * <br>
+ * Stateless, allocation-free, could be shared by any number of threads.
+ */
+public final class ThresholdTieringPolicy implements TieringPolicy {
+
+    private final long l1Threshold;
+    private final long l2Threshold;
+
+    public ThresholdTieringPolicy(long l1Threshold, long l2Threshold) {
+        if (l1Threshold <= 0 || l2Threshold < l1Threshold) {
+            throw new IllegalArgumentException("Expected 0 < l1Threshold <= l2Threshold, got " + l1Threshold + " and " + l2Threshold);
+        }
+        this.l1Threshold = l1Threshold;
+        this.l2Threshold = l2Threshold;
+    }
+
+    @Override
+    public Tier decide(MethodID method, Profile profile) {
+        final long invocations = Math.max(profile.localInvocations(), profile.globalInvocations());
+        if (invocations >= l2Threshold) {
+            return Tier.L2;
+        }
+        if (invocations >= l1Threshold) {
+            return Tier.L1;
+        }
+        return Tier.INTERPRETER;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ThresholdTieringPolicy(l1 = %d, l2 = %d)", l1Threshold, l2Threshold);
+    }
+}
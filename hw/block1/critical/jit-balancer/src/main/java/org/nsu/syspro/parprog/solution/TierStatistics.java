@@ -0,0 +1,47 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.TieringPolicy.Tier;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Exponentially weighted moving average of durations per {@link Tier}.
+ * <br>
+ * Updates are lock-free CAS loops, reads are plain volatile loads. Used to feed measured compile and execute costs
+ * into {@link org.nsu.syspro.parprog.TieringPolicy.Profile}.
+ */
+public final class TierStatistics {
+
+    // weight of a new sample is 1 / 2^SHIFT
+    private static final int SHIFT = 3;
+    private static final long UNKNOWN = -1;
+
+    private final AtomicLongArray averages = new AtomicLongArray(Tier.values().length);
+
+    public TierStatistics() {
+        for (int i = 0; i < averages.length(); i++) {
+            averages.set(i, UNKNOWN);
+        }
+    }
+
+    public void record(Tier tier, long nanos) {
+        assert nanos >= 0;
+        final int i = tier.ordinal();
+        while (true) {
+            final long old = averages.get(i);
+            final long updated = (old == UNKNOWN)
+                    ? nanos
+                    : old + ((nanos - old) >> SHIFT);
+            if (averages.compareAndSet(i, old, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return average duration in nanoseconds or {@code -1} if nothing was recorded
+     */
+    public long average(Tier tier) {
+        return averages.get(tier.ordinal());
+    }
+}
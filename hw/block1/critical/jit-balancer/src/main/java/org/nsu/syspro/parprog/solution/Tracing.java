@@ -0,0 +1,305 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.nsu.syspro.parprog.TieringPolicy.Tier;
+import org.nsu.syspro.parprog.external.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Instrumentation layer of JIT: wraps any {@link ExecutionEngine}/{@link CompilationEngine} and records
+ * <ul>
+ *     <li> per-tier latency histograms of interpretation, execution and compilation;
+ *     <li> per-method latency histograms of invocations, separately for every tier (optional, costs memory);
+ *     <li> histograms of time spent in the compile queue and blocked waiting for compiled code;
+ *     <li> {@link EventTrace} of compilations, queue waits, blocking waits and per-thread tier transitions.
+ * </ul>
+ * Usage: pass {@link #wrap(ExecutionEngine)} and {@link #wrap(CompilationEngine)} to user threads instead of the
+ * original engines. {@link JitRuntime} recognizes the wrapped compiler and reports queue and blocking waits here too.
+ * Results are exported by {@link #toJson()} and {@link #toChromeTrace()}.
+ * <br>
+ * Recording is lock-free after the first record of a method: that one inserts the per-method trace into
+ * {@link LongConcurrentTable}, whose insertions take its monitor. Hot path costs are two {@link System#nanoTime()}
+ * calls and an atomic increment per invocation, plus a lookup of the thread-local tier map.
+ * <br>
+ * Weak points: level of executed code is recognized by identity of {@link CompiledMethod}s returned by the wrapped
+ * compiler, code compiled by some other compiler is accounted as L1.
+ */
+public final class Tracing {
+
+    public static final int DEFAULT_TRACE_CAPACITY = 1 << 16;
+
+    public final EventTrace trace;
+
+    private final LatencyHistogram[] execution = newHistograms();
+    private final LatencyHistogram[] compilation = newHistograms();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram await = new LatencyHistogram();
+    private final boolean perMethod;
+    private final LongConcurrentTable<MethodTrace> methods = new LongConcurrentTable<>(1024, m -> m.methodId);
+
+    // last observed level + 1 of every method in the current thread, 0 means "never invoked"
+    private final ThreadLocal<LongLongMap> threadLevels = ThreadLocal.withInitial(LongLongMap::new);
+
+    public Tracing() {
+        this(DEFAULT_TRACE_CAPACITY, true);
+    }
+
+    /**
+     * @param traceCapacity number of latest events kept by {@link #trace}
+     * @param perMethod     whether to keep latency histograms of every method, about 7.5KB per method
+     */
+    public Tracing(int traceCapacity, boolean perMethod) {
+        this.trace = new EventTrace(traceCapacity);
+        this.perMethod = perMethod;
+    }
+
+    /**
+     * @return tracing which instruments given {@code compiler}, or {@code null} if it is not instrumented
+     */
+    public static Tracing of(CompilationEngine compiler) {
+        return (compiler instanceof TracingCompilationEngine) ? ((TracingCompilationEngine) compiler).tracing : null;
+    }
+
+    public ExecutionEngine wrap(ExecutionEngine exec) {
+        return new TracingExecutionEngine(exec);
+    }
+
+    public CompilationEngine wrap(CompilationEngine compiler) {
+        return new TracingCompilationEngine(this, compiler);
+    }
+
+    public LatencyHistogram execution(Tier tier) {
+        return execution[tier.ordinal()];
+    }
+
+    /**
+     * @param tier {@link Tier#L1} or {@link Tier#L2}
+     */
+    public LatencyHistogram compilation(Tier tier) {
+        return compilation[tier.ordinal()];
+    }
+
+    public LatencyHistogram queueWait() {
+        return queueWait;
+    }
+
+    public LatencyHistogram await() {
+        return await;
+    }
+
+    /**
+     * @return histogram of invocations of the method in given tier, or {@code null} if there were none or per-method
+     * histograms are disabled
+     */
+    public LatencyHistogram method(long methodId, Tier tier) {
+        final MethodTrace m = methods.get(methodId);
+        return (m == null) ? null : m.histograms.get(tier.ordinal());
+    }
+
+    void recordQueueWait(MethodID method, int level, long enqueuedNanos, long startNanos) {
+        queueWait.record(startNanos - enqueuedNanos);
+        trace.record(EventTrace.Type.QUEUE_WAIT, enqueuedNanos, startNanos - enqueuedNanos, method.id(), level);
+    }
+
+    void recordAwait(MethodID method, int level, long startNanos, long endNanos) {
+        await.record(endNanos - startNanos);
+        trace.record(EventTrace.Type.AWAIT, startNanos, endNanos - startNanos, method.id(), level);
+    }
+
+    /**
+     * @return JSON object with all histograms and the retained events
+     */
+    public String toJson() {
+        final StringBuilder sb = new StringBuilder("{\n");
+        for (Tier tier : Tier.values()) {
+            sb.append(String.format("\"execution_%s\": %s,\n", tier.name().toLowerCase(), execution(tier).toJson()));
+        }
+        sb.append(String.format("\"compilation_l1\": %s,\n", compilation(Tier.L1).toJson()));
+        sb.append(String.format("\"compilation_l2\": %s,\n", compilation(Tier.L2).toJson()));
+        sb.append(String.format("\"queue_wait\": %s,\n", queueWait.toJson()));
+        sb.append(String.format("\"await\": %s,\n", await.toJson()));
+
+        final List<MethodTrace> snapshot = new ArrayList<>();
+        methods.forEach(snapshot::add);
+        snapshot.sort((a, b) -> Long.compare(a.methodId, b.methodId));
+        sb.append("\"methods\": {");
+        String separator = "\n";
+        for (MethodTrace m : snapshot) {
+            sb.append(separator).append(String.format("  \"%d\": {", m.methodId));
+            String tierSeparator = "";
+            for (Tier tier : Tier.values()) {
+                final LatencyHistogram h = m.histograms.get(tier.ordinal());
+                if (h != null) {
+                    sb.append(tierSeparator).append(String.format("\"%s\": %s", tier.name().toLowerCase(), h.toJson()));
+                    tierSeparator = ", ";
+                }
+            }
+            sb.append("}");
+            separator = ",\n";
+        }
+        sb.append("\n},\n\"events\": ").append(trace.toJson()).append("\n}");
+        return sb.toString();
+    }
+
+    public String toChromeTrace() {
+        return trace.toChromeTrace();
+    }
+
+    public void writeJson(Path file) throws IOException {
+        Files.writeString(file, toJson());
+    }
+
+    public void writeChromeTrace(Path file) throws IOException {
+        Files.writeString(file, toChromeTrace());
+    }
+
+    private MethodTrace methodTrace(long methodId) {
+        final MethodTrace existing = methods.get(methodId);
+        return (existing != null) ? existing : methods.computeIfAbsent(methodId, MethodTrace::new);
+    }
+
+    private void recordInvocation(long methodId, int level, long startNanos, long endNanos) {
+        execution[level].record(endNanos - startNanos);
+
+        final LongLongMap levels = threadLevels.get();
+        if (levels.get(methodId) <= level) {
+            levels.put(methodId, level + 1);
+            trace.record(EventTrace.Type.TIER_TRANSITION, startNanos, 0, methodId, level);
+        }
+
+        if (perMethod) {
+            final AtomicReferenceArray<LatencyHistogram> histograms = methodTrace(methodId).histograms;
+            LatencyHistogram h = histograms.get(level);
+            if (h == null) {
+                histograms.compareAndSet(level, null, new LatencyHistogram());
+                h = histograms.get(level);
+            }
+            h.record(endNanos - startNanos);
+        }
+    }
+
+    private void recordCompilation(MethodID method, int level, long startNanos, long endNanos) {
+        compilation[level].record(endNanos - startNanos);
+        trace.record(EventTrace.Type.COMPILATION, startNanos, endNanos - startNanos, method.id(), level);
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        final LatencyHistogram[] result = new LatencyHistogram[Tier.values().length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new LatencyHistogram();
+        }
+        return result;
+    }
+
+    private static final class MethodTrace {
+        final long methodId;
+        // code returned by the wrapped compiler, to recognize the level of executed code
+        volatile CompiledMethod l2;
+        // indexed by Tier#ordinal, allocated on first invocation in the tier
+        final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(Tier.values().length);
+
+        MethodTrace(long methodId) {
+            this.methodId = methodId;
+        }
+    }
+
+    private final class TracingExecutionEngine implements ExecutionEngine {
+        private final ExecutionEngine delegate;
+
+        TracingExecutionEngine(ExecutionEngine delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ExecutionResult interpret(MethodID id) {
+            final long start = System.nanoTime();
+            final ExecutionResult result = delegate.interpret(id);
+            recordInvocation(id.id(), 0, start, System.nanoTime());
+            return result;
+        }
+
+        @Override
+        public ExecutionResult execute(CompiledMethod method) {
+            final long start = System.nanoTime();
+            final ExecutionResult result = delegate.execute(method);
+            final long end = System.nanoTime();
+            final long methodId = method.id().id();
+            final MethodTrace m = methods.get(methodId);
+            recordInvocation(methodId, (m != null && m.l2 == method) ? 2 : 1, start, end);
+            return result;
+        }
+    }
+
+    private static final class TracingCompilationEngine implements CompilationEngine {
+        private final Tracing tracing;
+        private final CompilationEngine delegate;
+
+        TracingCompilationEngine(Tracing tracing, CompilationEngine delegate) {
+            this.tracing = tracing;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompiledMethod compile_l1(MethodID method) {
+            final long start = System.nanoTime();
+            final CompiledMethod code = delegate.compile_l1(method);
+            tracing.recordCompilation(method, 1, start, System.nanoTime());
+            return code;
+        }
+
+        @Override
+        public CompiledMethod compile_l2(MethodID method) {
+            final long start = System.nanoTime();
+            final CompiledMethod code = delegate.compile_l2(method);
+            tracing.methodTrace(method.id()).l2 = code;
+            tracing.recordCompilation(method, 2, start, System.nanoTime());
+            return code;
+        }
+
+        @Override
+        public void compile_l1(List<? extends MethodID> methods, BatchCallback callback) {
+            delegate.compile_l1(methods, new TracingBatchCallback(1, callback));
+        }
+
+        @Override
+        public void compile_l2(List<? extends MethodID> methods, BatchCallback callback) {
+            delegate.compile_l2(methods, new TracingBatchCallback(2, callback));
+        }
+
+        /**
+         * Duration of a compilation in the batch is the time since the previous result.
+         */
+        private final class TracingBatchCallback implements BatchCallback {
+            private final int level;
+            private final BatchCallback delegate;
+            private long last = System.nanoTime();
+
+            TracingBatchCallback(int level, BatchCallback delegate) {
+                this.level = level;
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void compiled(MethodID method, CompiledMethod code) {
+                final long now = System.nanoTime();
+                if (level == 2) {
+                    tracing.methodTrace(method.id()).l2 = code;
+                }
+                tracing.recordCompilation(method, level, last, now);
+                last = now;
+                delegate.compiled(method, code);
+            }
+
+            @Override
+            public void failed(MethodID method, Throwable error) {
+                last = System.nanoTime();
+                delegate.failed(method, error);
+            }
+        }
+    }
+}
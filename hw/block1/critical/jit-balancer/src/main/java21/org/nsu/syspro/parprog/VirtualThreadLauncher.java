@@ -0,0 +1,14 @@
+package org.nsu.syspro.parprog;
+
+/**
+ * Runs every {@link UserThread} on its own virtual thread, see {@link UserThreadLauncher#virtual()}.
+ */
+public final class VirtualThreadLauncher implements UserThreadLauncher {
+
+    @Override
+    public Thread launch(UserThread thread) {
+        return Thread.ofVirtual()
+                .name(thread.getName())
+                .start(thread);
+    }
+}
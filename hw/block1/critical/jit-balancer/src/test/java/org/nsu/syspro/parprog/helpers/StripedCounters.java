@@ -0,0 +1,101 @@
+package org.nsu.syspro.parprog.helpers;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bank of {@code long} counters for write-mostly metrics, in the spirit of {@link java.util.concurrent.atomic.LongAdder}.
+ * <br>
+ * Every counter is split into {@link #stripes()} cells, a writer updates the cell of its stripe only. Stripe is chosen by
+ * the id of the current thread, so a thread always hits the same cells and threads with different stripes never write
+ * the same cache line:
+ * <pre>
+ *     | pad | stripe 0: counter 0 .. counter n-1 | pad | stripe 1: counter 0 .. counter n-1 | pad | ...
+ * </pre>
+ * Counters of the same stripe share cache lines, which is fine as long as they are updated by the same thread.
+ * <br>
+ * Reads sum up all cells of a counter without a lock, they are meant for reports rather than for hot paths. Neither
+ * {@link #sum} nor {@link #snapshot()} is atomic: like {@link java.util.concurrent.atomic.LongAdder#sum()}, a sum taken
+ * while writers are running may be a value the counter never had at any instant. Sums are exact only when writers are
+ * quiescent, e.g. after the user threads are joined.
+ * <br>
+ * Weak points: stripes are not re-balanced, so threads whose ids collide modulo {@link #stripes()} keep contending.
+ */
+public final class StripedCounters {
+
+    // 128 bytes: cache line and adjacent line prefetch
+    private static final int PAD = 16;
+
+    private final int counters;
+    private final int stripes;
+    private final int stride;
+    private final AtomicLongArray cells;
+
+    /**
+     * Creates bank of {@code counters} counters striped by twice the number of available processors.
+     */
+    public StripedCounters(int counters) {
+        this(counters, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param stripes rounded up to the power of two
+     */
+    public StripedCounters(int counters, int stripes) {
+        if (counters < 1 || stripes < 1) {
+            throw new IllegalArgumentException("Counters and stripes must be positive: " + counters + ", " + stripes);
+        }
+        this.counters = counters;
+        this.stripes = Integer.highestOneBit(Math.min(stripes, 1 << 16) * 2 - 1);
+        this.stride = ((counters + PAD - 1) / PAD + 1) * PAD;
+        this.cells = new AtomicLongArray(PAD + this.stripes * stride);
+    }
+
+    public int counters() {
+        return counters;
+    }
+
+    public int stripes() {
+        return stripes;
+    }
+
+    public void increment(int counter) {
+        add(counter, 1);
+    }
+
+    public void add(int counter, long delta) {
+        assert 0 <= counter && counter < counters;
+        cells.getAndAdd(cellOf(stripeOf(Thread.currentThread()), counter), delta);
+    }
+
+    public long sum(int counter) {
+        assert 0 <= counter && counter < counters;
+        long sum = 0;
+        for (int s = 0; s < stripes; s++) {
+            sum += cells.get(cellOf(s, counter));
+        }
+        return sum;
+    }
+
+    /**
+     * @return sums of all counters, indexed by counter
+     */
+    public long[] snapshot() {
+        final long[] result = new long[counters];
+        for (int s = 0; s < stripes; s++) {
+            final int base = cellOf(s, 0);
+            for (int c = 0; c < counters; c++) {
+                result[c] += cells.get(base + c);
+            }
+        }
+        return result;
+    }
+
+    private int stripeOf(Thread thread) {
+        // thread ids are dense, so consecutively started threads get different stripes
+        return (int) thread.getId() & (stripes - 1);
+    }
+
+    private int cellOf(int stripe, int counter) {
+        return PAD + stripe * stride + counter;
+    }
+}
@@ -0,0 +1,45 @@
+package org.nsu.syspro.parprog.helpers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripedCountersTest {
+
+    @Test
+    void stripesAreRoundedUpToPowerOfTwo() {
+        assertEquals(1, new StripedCounters(1, 1).stripes());
+        assertEquals(8, new StripedCounters(1, 5).stripes());
+        assertEquals(8, new StripedCounters(1, 8).stripes());
+        assertThrows(IllegalArgumentException.class, () -> new StripedCounters(0, 1));
+    }
+
+    @Test
+    @Timeout(5)
+    void concurrentUpdatesAreNotLost() throws InterruptedException {
+        final StripedCounters counters = new StripedCounters(3, 4);
+        final int N = 16;
+        final int ITERATIONS = 100_000;
+        final ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < N; i++) {
+            final Thread t = new Thread(() -> {
+                for (int j = 0; j < ITERATIONS; j++) {
+                    counters.increment(0);
+                    counters.add(2, 3);
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals((long) N * ITERATIONS, counters.sum(0));
+        assertEquals(0, counters.sum(1));
+        assertArrayEquals(new long[]{(long) N * ITERATIONS, 0, 3L * N * ITERATIONS}, counters.snapshot());
+    }
+}
@@ -1,6 +1,7 @@
 package org.nsu.syspro.parprog.helpers;
 
 import org.nsu.syspro.parprog.UserThread;
+import org.nsu.syspro.parprog.UserThreadLauncher;
 import org.nsu.syspro.parprog.external.*;
 import org.nsu.syspro.parprog.solution.EasyFastTest;
 
@@ -33,7 +34,8 @@ public class TestEnvironment {
         EXECUTED_LOWER_OPT_LEVEL_THAN_GLOBALLY_AVAILABLE,
     }
 
-    private final AtomicLong[] counters;
+    // striped, so that the harness does not measure contention on its own counters
+    private final StripedCounters counters = new StripedCounters(EventType.values().length);
 
     private final TestExecutionEngine engine;
     private final TestCompilationEngine compiler;
@@ -47,18 +49,14 @@ public class TestEnvironment {
         compiler = new TestCompilationEngine(l1comp, l2comp);
         taskExecutor = new TestExecutor();
         utilityPool = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
-        counters = new AtomicLong[EventType.values().length];
-        for (int i = 0; i < counters.length; i++) {
-            counters[i] = new AtomicLong(0);
-        }
     }
 
     private void inc(EventType type) {
-        counters[type.ordinal()].addAndGet(1);
+        counters.increment(type.ordinal());
     }
 
     public long counter(EventType type) {
-        return counters[type.ordinal()].get();
+        return counters.sum(type.ordinal());
     }
 
     private static final ThreadLocal<Map<Long, Integer>> perThreadJITLevels = ThreadLocal.withInitial(HashMap::new);
@@ -152,7 +150,10 @@ public class TestEnvironment {
         );
     }
 
-    public UserThread startSeparateUserThread(Runnable runnable) throws InterruptedException {
+    /**
+     * @return Java thread which runs the user thread (the user thread itself or its virtual thread), to join
+     */
+    public Thread startSeparateUserThread(Runnable runnable) throws InterruptedException {
         try {
             return utilityPool.submit(() -> taskExecutor.execute(runnable)).get();
         } catch (ExecutionException e) {
@@ -199,23 +200,24 @@ public class TestEnvironment {
         System.out.println(report());
     }
 
-    private String u(String x, EventType tpe) {
-        return x + " = " + counter(tpe) + "\n";
+    private static String u(long[] snapshot, String x, EventType tpe) {
+        return x + " = " + snapshot[tpe.ordinal()] + "\n";
     }
 
     private String report() {
         final long idOnReport = UserThread.firstUnusedThreadNum();
         final long delta = idOnReport - idOnStart;
+        final long[] snapshot = counters.snapshot();
         return "UserThreads.estimate = " + delta + "\n" +
-                u("startedTasks", EventType.STARTED_TASKS) +
-                u("finishedTasks", EventType.FINISHED_TASKS) +
-                u("interpretedTasks", EventType.INTERPRETED) +
-                u("l1Tasks", EventType.L1_EXECUTED) +
-                u("l2Tasks", EventType.L2_EXECUTED) +
-                u("l1Compilations_start", EventType.L1_COMPILATION_START) +
-                u("l1Compilations_end", EventType.L1_COMPILATION_END) +
-                u("l2Compilations_start", EventType.L2_COMPILATION_START) +
-                u("l2Compilations_end", EventType.L2_COMPILATION_END);
+                u(snapshot, "startedTasks", EventType.STARTED_TASKS) +
+                u(snapshot, "finishedTasks", EventType.FINISHED_TASKS) +
+                u(snapshot, "interpretedTasks", EventType.INTERPRETED) +
+                u(snapshot, "l1Tasks", EventType.L1_EXECUTED) +
+                u(snapshot, "l2Tasks", EventType.L2_EXECUTED) +
+                u(snapshot, "l1Compilations_start", EventType.L1_COMPILATION_START) +
+                u(snapshot, "l1Compilations_end", EventType.L1_COMPILATION_END) +
+                u(snapshot, "l2Compilations_start", EventType.L2_COMPILATION_START) +
+                u(snapshot, "l2Compilations_end", EventType.L2_COMPILATION_END);
     }
 
     private class TestExecutionEngine implements ExecutionEngine {
@@ -354,8 +356,8 @@ public class TestEnvironment {
         public CompiledMethod compile_l2_impl(TestMethod method) {
             if (TestLevels.mediumEnabled()) {
                 //  `Heavy-compilation-offloading`: there is no `UserThread` that ever execute `compile_l2`
-                if (Thread.currentThread() instanceof UserThread) {
-                    final UserThread t = (UserThread) Thread.currentThread();
+                final UserThread t = UserThread.currentOrNull();
+                if (t != null) {
                     fail("UserThread (" + t.id + ") tried to compile MethodId(" + method.id() + ") by L2 JIT");
                 }
             }
@@ -374,8 +376,10 @@ public class TestEnvironment {
 
     private final class TestExecutor {
         private final Set<UserThread> running = new HashSet<>();
+        // platform or virtual user threads, chosen by -Djit.userThreads
+        private final UserThreadLauncher launcher = UserThreadLauncher.fromSystemProperty();
 
-        public UserThread execute(Runnable command) {
+        public Thread execute(Runnable command) {
             final UserThread thread = EasyFastTest.createUserThread(engine, compiler, () -> {
                 command.run();
 
@@ -394,8 +398,7 @@ public class TestEnvironment {
                 running.add(thread);
             }
 
-            thread.start();
-            return thread;
+            return launcher.launch(thread);
         }
 
         public boolean awaitTerminationSeconds(int seconds) throws InterruptedException {
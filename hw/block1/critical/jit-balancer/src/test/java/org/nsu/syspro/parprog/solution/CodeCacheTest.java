@@ -0,0 +1,338 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.nsu.syspro.parprog.UserThread;
+import org.nsu.syspro.parprog.external.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodeCacheTest {
+
+    private static CompiledMethod compiled(long id) {
+        final MethodID method = () -> id;
+        return () -> method;
+    }
+
+    @Test
+    void publishedLevelNeverDecreases() {
+        final CodeCache cache = new CodeCache();
+        assertNull(cache.code(7));
+
+        final CompiledMethod l2 = compiled(7);
+        assertSame(l2, cache.publish(2, l2).method);
+        assertSame(l2, cache.publish(1, compiled(7)).method);
+        assertEquals(2, cache.lookup(7).level());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void epochGrowsOnlyWithPublishedLevel() {
+        final CodeCache cache = new CodeCache();
+        assertEquals(0, cache.epoch());
+        cache.publish(1, compiled(7));
+        assertEquals(1, cache.epoch());
+        cache.publish(1, compiled(7));
+        assertEquals(1, cache.epoch());
+        cache.publish(2, compiled(7));
+        cache.publish(1, compiled(7));
+        assertEquals(2, cache.epoch());
+        cache.entry(8);
+        assertEquals(2, cache.epoch());
+    }
+
+    @Test
+    void stateFollowsCompilations() {
+        final CodeCache cache = new CodeCache();
+        final ArrayList<Runnable> scheduled = new ArrayList<>();
+        final SingleFlightCompiler singleFlight = new SingleFlightCompiler(new CompilationServiceTest.CountingCompiler(0),
+                cache, new TierStatistics(), (method, level, compilation) -> scheduled.add(compilation));
+        final MethodID method = () -> 9L;
+        final CodeCache.Entry e = cache.entry(9);
+        assertEquals(CodeCache.State.COLD, e.state());
+
+        singleFlight.compile(method, 1);
+        assertEquals(CodeCache.State.L1_QUEUED, e.state());
+        scheduled.remove(0).run();
+        assertEquals(CodeCache.State.L1_READY, e.state());
+
+        // L2 requested while L1 is still queued, L1 result does not move the state back
+        singleFlight.compile(() -> 10L, 1);
+        singleFlight.compile(() -> 10L, 2);
+        assertEquals(CodeCache.State.L2_QUEUED, cache.lookup(10).state());
+        scheduled.get(0).run();
+        assertEquals(1, cache.lookup(10).level());
+        assertEquals(CodeCache.State.L2_QUEUED, cache.lookup(10).state());
+
+        final CompletableFuture<CompiledMethod> l2 = singleFlight.compile(method, 2);
+        assertSame(l2, singleFlight.compile(method, 2));
+        assertEquals(CodeCache.State.L2_QUEUED, e.state());
+        singleFlight.cancel(method, 2);
+        assertTrue(l2.isCompletedExceptionally());
+        assertEquals(CodeCache.State.L1_READY, e.state());
+
+        singleFlight.compile(method, 2);
+        scheduled.get(scheduled.size() - 1).run();
+        assertEquals(CodeCache.State.L2_READY, e.state());
+        assertNull(singleFlight.inFlight(9, 2));
+    }
+
+    @Test
+    void growsAndKeepsAllEntries() {
+        final CodeCache cache = new CodeCache(1);
+        final int N = 10_000;
+        for (int i = 0; i < N; i++) {
+            cache.publish(1, compiled(i * 31L));
+        }
+        assertEquals(N, cache.size());
+        for (int i = 0; i < N; i++) {
+            assertEquals(i * 31L, cache.code(i * 31L).method.id().id());
+        }
+        assertNull(cache.code(-1));
+    }
+
+    @Test
+    @Timeout(5)
+    void readersObserveMonotonicLevels() throws InterruptedException {
+        final CodeCache cache = new CodeCache(1);
+        final int METHODS = 1_000;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        final ArrayList<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            final Thread t = new Thread(() -> {
+                final int[] seen = new int[METHODS];
+                while (done.getCount() > 0) {
+                    for (int m = 0; m < METHODS; m++) {
+                        final CodeCache.Entry e = cache.lookup(m);
+                        final int level = (e == null) ? 0 : e.level();
+                        if (level < seen[m]) {
+                            failure.compareAndSet(null, new AssertionError("MethodID(" + m + ") went from L" + seen[m] + " to L" + level));
+                        }
+                        seen[m] = Math.max(seen[m], level);
+                    }
+                }
+            });
+            t.start();
+            readers.add(t);
+        }
+
+        for (int level = 1; level <= 2; level++) {
+            for (int m = 0; m < METHODS; m++) {
+                cache.publish(level, compiled(m));
+            }
+        }
+        done.countDown();
+
+        for (Thread t : readers) {
+            t.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    void boundedCacheEvictsInfrequentMethods() {
+        final CodeCache cache = new CodeCache(100, Long.MAX_VALUE, CodeCache.DEFAULT_TIER_COST);
+        for (int m = 0; m < 100; m++) {
+            cache.publish(1, compiled(m));
+        }
+        // methods 0..9 are hot
+        for (int t = 0; t < 50; t++) {
+            for (int m = 0; m < 10; m++) {
+                cache.touch(m);
+            }
+        }
+        for (int m = 100; m < 150; m++) {
+            cache.publish(1, compiled(m));
+        }
+
+        assertEquals(100, cache.residents());
+        assertEquals(50, cache.evictions());
+        assertEquals(150, cache.size());
+        for (int m = 0; m < 10; m++) {
+            assertNotNull(cache.code(m), "hot MethodID(" + m + ") was evicted");
+        }
+        // evicted method may be compiled and published again
+        final long evicted = java.util.stream.LongStream.range(10, 100).filter(m -> cache.code(m) == null).findFirst().orElseThrow();
+        assertEquals(2, cache.publish(2, compiled(evicted)).level);
+    }
+
+    @Test
+    void boundedCacheRespectsTierCost() {
+        final CodeCache cache = new CodeCache(1_000, 10, CodeCache.DEFAULT_TIER_COST);
+        for (int m = 0; m < 10; m++) {
+            cache.publish(1, compiled(m));
+        }
+        assertEquals(10, cache.residentCost());
+        cache.publish(2, compiled(0));
+        cache.publish(2, compiled(1));
+        assertTrue(cache.residentCost() <= 10);
+        assertEquals(2, cache.code(1).level);
+        assertThrows(IllegalArgumentException.class, () -> new CodeCache(1, 3, CodeCache.DEFAULT_TIER_COST));
+    }
+
+    @Test
+    @Timeout(5)
+    void threadKeepsExecutingEvictedCode() throws InterruptedException {
+        final CompiledMethod[] l2 = new CompiledMethod[1];
+        final CompilationEngine compiler = new CompilationEngine() {
+            @Override
+            public CompiledMethod compile_l1(MethodID method) {
+                return () -> method;
+            }
+
+            @Override
+            public CompiledMethod compile_l2(MethodID method) {
+                final CompiledMethod code = () -> method;
+                l2[0] = code;
+                return code;
+            }
+        };
+        final CompiledMethod[] executed = new CompiledMethod[1];
+        final ExecutionEngine exec = new ExecutionEngine() {
+            @Override
+            public ExecutionResult interpret(MethodID id) {
+                executed[0] = null;
+                return null;
+            }
+
+            @Override
+            public ExecutionResult execute(CompiledMethod method) {
+                executed[0] = method;
+                return null;
+            }
+        };
+        final CodeCache cache = new CodeCache(1, Long.MAX_VALUE, CodeCache.DEFAULT_TIER_COST);
+        final JitRuntime runtime = JitRuntime.forEngine(compiler, 1, cache);
+
+        final MethodID method = () -> 1L;
+        final AtomicReference<CompiledMethod> afterEviction = new AtomicReference<>();
+        final SolutionThread thread = new SolutionThread(1, exec, compiler, () -> {
+            final SolutionThread self = (SolutionThread) UserThread.current();
+            for (long i = 0; i < SolutionThread.L2_DEADLINE; i++) {
+                self.executeMethod(method);
+            }
+            assertSame(l2[0], executed[0]);
+            cache.publish(1, compiled(2));
+            assertNull(cache.code(1));
+            self.executeMethod(method);
+            afterEviction.set(executed[0]);
+        });
+        thread.start();
+        thread.join();
+
+        assertNotNull(l2[0]);
+        assertSame(l2[0], afterEviction.get());
+        assertSame(cache, runtime.codeCache);
+    }
+
+    @Test
+    @Timeout(30)
+    void evictedMethodIsCompiledWithinBudget() throws InterruptedException {
+        final AtomicInteger l1 = new AtomicInteger();
+        final AtomicInteger l2 = new AtomicInteger();
+        final CompilationEngine compiler = new CompilationEngine() {
+            @Override
+            public CompiledMethod compile_l1(MethodID method) {
+                l1.incrementAndGet();
+                return () -> method;
+            }
+
+            @Override
+            public CompiledMethod compile_l2(MethodID method) {
+                l2.incrementAndGet();
+                return () -> method;
+            }
+        };
+        final ExecutionEngine exec = new ExecutionEngine() {
+            @Override
+            public ExecutionResult interpret(MethodID id) {
+                return null;
+            }
+
+            @Override
+            public ExecutionResult execute(CompiledMethod method) {
+                return null;
+            }
+        };
+        final CodeCache cache = new CodeCache(1, Long.MAX_VALUE, CodeCache.DEFAULT_TIER_COST);
+        final JitRuntime runtime = JitRuntime.forEngine(compiler, 2, cache);
+
+        // every publication of another method evicts the only resident one
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final Thread evictor = new Thread(() -> {
+            for (long i = 0; !done.get(); i++) {
+                cache.publish(1, compiled(100 + i % 64));
+                Thread.yield();
+            }
+        });
+        evictor.start();
+
+        final MethodID method = () -> 1L;
+        final AtomicInteger finished = new AtomicInteger();
+        final ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new SolutionThread(2, exec, compiler, () -> {
+                final SolutionThread self = (SolutionThread) UserThread.current();
+                for (long i = 0; i < 2 * SolutionThread.L2_DEADLINE; i++) {
+                    self.executeMethod(method);
+                }
+                finished.incrementAndGet();
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+        done.set(true);
+        evictor.join();
+
+        assertEquals(threads.size(), finished.get());
+        assertTrue(cache.evictions() > 0);
+        assertEquals(1, l2.get());
+        assertTrue(l1.get() <= CodeCache.Entry.COMPILE_BUDGET[1], "L1 compilations: " + l1.get());
+        assertSame(cache, runtime.codeCache);
+    }
+
+    @Test
+    void enginesDoNotShareCode() {
+        final CompilationEngine a = new CompilationEngine() {
+            @Override
+            public CompiledMethod compile_l1(MethodID method) {
+                return () -> method;
+            }
+
+            @Override
+            public CompiledMethod compile_l2(MethodID method) {
+                return () -> method;
+            }
+        };
+        final CompilationEngine b = new CompilationEngine() {
+            @Override
+            public CompiledMethod compile_l1(MethodID method) {
+                return () -> method;
+            }
+
+            @Override
+            public CompiledMethod compile_l2(MethodID method) {
+                return () -> method;
+            }
+        };
+        final JitRuntime runtimeA = JitRuntime.forEngine(a, 1);
+        final JitRuntime runtimeB = JitRuntime.forEngine(b, 1);
+
+        assertSame(runtimeA, JitRuntime.forEngine(a, 1));
+        assertNotSame(runtimeA, runtimeB);
+        assertNotSame(runtimeA.codeCache, runtimeB.codeCache);
+        runtimeA.codeCache.publish(2, compiled(7));
+        assertNull(runtimeB.codeCache.code(7));
+    }
+}
@@ -0,0 +1,96 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.junit.jupiter.api.Test;
+import org.nsu.syspro.parprog.helpers.TestLevels;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompilationBudgetTest {
+
+    static final long WINDOW = 200_000_000;
+
+    /**
+     * Spends {@code nanos} of the current thread time as a compilation would, and accounts it.
+     */
+    static void burn(CompilationBudget budget, long nanos) {
+        final long start = budget.start();
+        while (budget.start() - start < nanos) {
+            Thread.onSpinWait();
+        }
+        budget.record(start);
+    }
+
+    @Test
+    void spentTimeLeavesSlidingWindow() {
+        final int cpus = Runtime.getRuntime().availableProcessors();
+        // 1% of all cores over 200ms is 2ms per core
+        final CompilationBudget budget = new CompilationBudget(0.01, WINDOW);
+        assertFalse(budget.exceeded());
+        assertEquals(0, budget.utilization());
+
+        burn(budget, 3_000_000L * cpus);
+        assertTrue(budget.exceeded());
+        assertTrue(budget.used() >= 3_000_000L * cpus);
+        assertTrue(budget.utilization() > budget.share());
+
+        TestLevels.sleepNanos(WINDOW + WINDOW / CompilationBudget.BUCKETS);
+        assertEquals(0, budget.used());
+        assertFalse(budget.exceeded());
+    }
+
+    @Test
+    void onlyUrgentRequestsStartOverBudget() throws InterruptedException {
+        final CompilationBudget budget = new CompilationBudget(0.01, WINDOW);
+        final CompileQueue queue = new CompileQueue(null, CompileQueue.COLD_AFTER_NANOS, budget, new CompileQueue.Listener() {
+            @Override
+            public void started(CompileQueue.Request request, long startNanos) {
+            }
+
+            @Override
+            public void cancelled(CompileQueue.Request request) {
+            }
+        });
+        // the queue accounts time of compilations by itself
+        final long heavy = 3_000_000L * Runtime.getRuntime().availableProcessors();
+        queue.offer(queue.new Request(() -> 1L, 2, 0, () -> {
+        }));
+        queue.offer(queue.new Request(() -> 2L, 1, 1, () -> {
+            final long start = budget.start();
+            while (budget.start() - start < heavy) {
+                Thread.onSpinWait();
+            }
+        }));
+        queue.markUrgent(2, 1);
+        queue.take().run();
+        assertTrue(budget.exceeded());
+
+        // deferred, not lost
+        assertNull(queue.poll());
+        assertEquals(1, queue.size());
+        assertTrue(budget.deferrals() > 0);
+
+        assertTrue(queue.markUrgent(1, 2));
+        assertEquals(1L, queue.take().method.id());
+    }
+
+    @Test
+    void budgetIsOptIn() {
+        final String saved = System.getProperty(CompilationBudget.PROPERTY);
+        try {
+            System.clearProperty(CompilationBudget.PROPERTY);
+            assertNull(CompilationBudget.fromSystemProperty());
+
+            System.setProperty(CompilationBudget.PROPERTY, "100");
+            assertNull(CompilationBudget.fromSystemProperty());
+
+            System.setProperty(CompilationBudget.PROPERTY, "25");
+            assertEquals(0.25, CompilationBudget.fromSystemProperty().share());
+        } finally {
+            if (saved == null) {
+                System.clearProperty(CompilationBudget.PROPERTY);
+            } else {
+                System.setProperty(CompilationBudget.PROPERTY, saved);
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.nsu.syspro.parprog.external.CompilationEngine;
+import org.nsu.syspro.parprog.external.CompiledMethod;
+import org.nsu.syspro.parprog.external.MethodID;
+import org.nsu.syspro.parprog.helpers.TestLevels;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompilationServiceTest {
+
+    static class CountingCompiler implements CompilationEngine {
+        final AtomicInteger active = new AtomicInteger(0);
+        final AtomicInteger maxActive = new AtomicInteger(0);
+        final ConcurrentHashMap<Long, AtomicInteger> compilations = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, Thread> compiledBy = new ConcurrentHashMap<>();
+        final long delayNanos;
+
+        CountingCompiler(long delayNanos) {
+            this.delayNanos = delayNanos;
+        }
+
+        private CompiledMethod compile(MethodID method) {
+            final int now = active.incrementAndGet();
+            maxActive.accumulateAndGet(now, Math::max);
+            compilations.computeIfAbsent(method.id(), k -> new AtomicInteger()).incrementAndGet();
+            compiledBy.put(method.id(), Thread.currentThread());
+            try {
+                TestLevels.sleepNanos(delayNanos);
+            } finally {
+                active.decrementAndGet();
+            }
+            return () -> method;
+        }
+
+        @Override
+        public CompiledMethod compile_l1(MethodID method) {
+            return compile(method);
+        }
+
+        @Override
+        public CompiledMethod compile_l2(MethodID method) {
+            return compile(method);
+        }
+    }
+
+    @Test
+    @Timeout(5)
+    void compilesEveryMethodOnceOffCallerThread() {
+        final CountingCompiler compiler = new CountingCompiler(1_000_000);
+        final CodeCache cache = new CodeCache();
+        final CompilationService service = new CompilationService(compiler, cache, 2);
+
+        final MethodID method = () -> 1L;
+        final CompletableFuture<CompiledMethod> first = service.submit(method, 2);
+        final CompletableFuture<CompiledMethod> second = service.submit(method, 2);
+        assertSame(first, second);
+
+        first.join();
+        assertEquals(1, compiler.compilations.get(1L).get());
+        assertNotSame(Thread.currentThread(), compiler.compiledBy.get(1L));
+        assertTrue(compiler.compiledBy.get(1L).isDaemon());
+        assertEquals(2, cache.lookup(1L).level());
+    }
+
+    @Test
+    @Timeout(5)
+    void respectsThreadBound() {
+        final CountingCompiler compiler = new CountingCompiler(2_000_000);
+        final CompilationService service = new CompilationService(compiler, new CodeCache(), 3);
+
+        final ArrayList<CompletableFuture<CompiledMethod>> futures = new ArrayList<>();
+        for (long i = 0; i < 30; i++) {
+            final long id = i;
+            futures.add(service.submit(() -> id, (int) (1 + i % 2)));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        assertTrue(compiler.maxActive.get() <= 3, "max concurrent compilations = " + compiler.maxActive.get());
+        assertEquals(30, compiler.compilations.size());
+    }
+
+    @Test
+    @Timeout(5)
+    void drainsQueueInBatchesOfTheSameLevel() {
+        final List<Integer> batches = new CopyOnWriteArrayList<>();
+        final CountingCompiler compiler = new CountingCompiler(5_000_000) {
+            @Override
+            public void compile_l1(List<? extends MethodID> methods, BatchCallback callback) {
+                batches.add(methods.size());
+                super.compile_l1(methods, callback);
+            }
+        };
+        final CompilationService service = new CompilationService(compiler, new CodeCache(), 1);
+
+        // the only worker is busy with the first request while the rest are queued
+        final ArrayList<CompletableFuture<CompiledMethod>> futures = new ArrayList<>();
+        for (long i = 0; i < 10; i++) {
+            final long id = i;
+            futures.add(service.submit(() -> id, 1));
+        }
+        final CompletableFuture<CompiledMethod> l2 = service.submit(() -> 100L, 2);
+        futures.forEach(CompletableFuture::join);
+        l2.join();
+
+        assertEquals(10, batches.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batches.size() < 10, "batches: " + batches);
+        assertEquals(11, compiler.compilations.size());
+        compiler.compilations.values().forEach(n -> assertEquals(1, n.get()));
+    }
+
+    @Test
+    void batchFailureFailsOnlyItsMethod() {
+        final CountingCompiler compiler = new CountingCompiler(0) {
+            @Override
+            public CompiledMethod compile_l2(MethodID method) {
+                if (method.id() == 2) {
+                    throw new IllegalStateException("broken");
+                }
+                return super.compile_l2(method);
+            }
+        };
+        final CodeCache cache = new CodeCache();
+        final ArrayList<SingleFlightCompiler.Compilation> scheduled = new ArrayList<>();
+        final SingleFlightCompiler singleFlight = new SingleFlightCompiler(compiler, cache, new TierStatistics(),
+                (method, level, compilation) -> scheduled.add((SingleFlightCompiler.Compilation) compilation));
+
+        final ArrayList<CompletableFuture<CompiledMethod>> futures = new ArrayList<>();
+        for (long i = 1; i <= 3; i++) {
+            final long id = i;
+            futures.add(singleFlight.compile(() -> id, 2));
+        }
+        assertThrows(IllegalStateException.class, () -> singleFlight.compileBatch(2, scheduled));
+
+        assertSame(cache.code(1L).method, futures.get(0).join());
+        assertTrue(futures.get(1).isCompletedExceptionally());
+        assertSame(cache.code(3L).method, futures.get(2).join());
+        assertNull(singleFlight.inFlight(2L, 2));
+    }
+
+    @Test
+    void batchRethrowsCheckedFailureWrapped() {
+        final IOException broken = new IOException("broken");
+        final CountingCompiler compiler = new CountingCompiler(0) {
+            @Override
+            public void compile_l2(List<? extends MethodID> methods, BatchCallback callback) {
+                for (MethodID method : methods) {
+                    if (method.id() == 2) {
+                        callback.failed(method, broken);
+                    } else {
+                        callback.compiled(method, compile_l2(method));
+                    }
+                }
+            }
+        };
+        final CodeCache cache = new CodeCache();
+        final ArrayList<SingleFlightCompiler.Compilation> scheduled = new ArrayList<>();
+        final SingleFlightCompiler singleFlight = new SingleFlightCompiler(compiler, cache, new TierStatistics(),
+                (method, level, compilation) -> scheduled.add((SingleFlightCompiler.Compilation) compilation));
+
+        final ArrayList<CompletableFuture<CompiledMethod>> futures = new ArrayList<>();
+        for (long i = 1; i <= 3; i++) {
+            final long id = i;
+            futures.add(singleFlight.compile(() -> id, 2));
+        }
+        final CompletionException e = assertThrows(CompletionException.class,
+                () -> singleFlight.compileBatch(2, scheduled));
+
+        assertSame(broken, e.getCause());
+        assertSame(broken, assertThrows(CompletionException.class, () -> futures.get(1).join()).getCause());
+        assertSame(cache.code(3L).method, futures.get(2).join());
+    }
+
+    @Test
+    void batchReportsStartOfEveryCompilation() {
+        final long delay = 10_000_000;
+        final ArrayList<SingleFlightCompiler.Compilation> scheduled = new ArrayList<>();
+        final SingleFlightCompiler singleFlight = new SingleFlightCompiler(new CountingCompiler(delay),
+                new CodeCache(), new TierStatistics(),
+                (method, level, compilation) -> scheduled.add((SingleFlightCompiler.Compilation) compilation));
+        for (long i = 1; i <= 3; i++) {
+            final long id = i;
+            singleFlight.compile(() -> id, 1);
+        }
+
+        final ConcurrentHashMap<Long, Long> starts = new ConcurrentHashMap<>();
+        final long before = System.nanoTime();
+        singleFlight.compileBatch(1, scheduled, (compilation, startNanos) ->
+                assertNull(starts.put(compilation.method.id(), startNanos)));
+
+        // methods later in the batch wait for the compilations before them
+        assertEquals(3, starts.size());
+        assertTrue(starts.get(1L) >= before);
+        assertTrue(starts.get(2L) - starts.get(1L) >= delay);
+        assertTrue(starts.get(3L) - starts.get(2L) >= delay);
+    }
+
+    @Test
+    @Timeout(5)
+    void firstRequestGoesThroughQueue() {
+        final CountingCompiler compiler = new CountingCompiler(0);
+        final CompilationBudget budget = new CompilationBudget(0.01, CompilationBudgetTest.WINDOW);
+        CompilationBudgetTest.burn(budget, 3_000_000L * Runtime.getRuntime().availableProcessors());
+        // no workers yet: the pool must not hand the request to a new worker past the budget
+        final CompilationService service = new CompilationService(compiler, new CodeCache(), new TierStatistics(),
+                null, budget, 1);
+
+        final MethodID method = () -> 1L;
+        service.submit(method, 1);
+        TestLevels.sleepNanos(50_000_000);
+        assertNull(compiler.compilations.get(1L));
+        assertEquals(1, service.queued());
+
+        assertNotNull(service.await(method, 1));
+        assertEquals(1, compiler.compilations.get(1L).get());
+    }
+}
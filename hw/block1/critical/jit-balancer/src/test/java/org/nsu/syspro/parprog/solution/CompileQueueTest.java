@@ -0,0 +1,89 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.nsu.syspro.parprog.external.MethodID;
+import org.nsu.syspro.parprog.helpers.TestLevels;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompileQueueTest {
+
+    private final ConcurrentHashMap<Long, Long> hotness = new ConcurrentHashMap<>();
+    private final List<Long> cancelled = new ArrayList<>();
+
+    private CompileQueue queue(long coldAfterNanos) {
+        return new CompileQueue(m -> hotness.getOrDefault(m, 0L), coldAfterNanos, null, new CompileQueue.Listener() {
+            @Override
+            public void started(CompileQueue.Request request, long startNanos) {
+            }
+
+            @Override
+            public void cancelled(CompileQueue.Request request) {
+                cancelled.add(request.method.id());
+            }
+        });
+    }
+
+    private static CompileQueue.Request request(CompileQueue queue, long id, int level) {
+        final MethodID method = () -> id;
+        return queue.new Request(method, level, id, () -> {
+        });
+    }
+
+    private static long take(CompileQueue queue) throws InterruptedException {
+        return queue.poll(1, TimeUnit.SECONDS).method.id();
+    }
+
+    @Test
+    void hottestMethodGoesFirstUnlessSomebodyWaits() throws InterruptedException {
+        final CompileQueue queue = queue(Long.MAX_VALUE);
+        for (long id = 1; id <= 3; id++) {
+            hotness.put(id, 1_000L);
+            queue.offer(request(queue, id, 1));
+        }
+        // method 2 got much hotter while waiting
+        hotness.put(2L, 1_000_000L);
+        assertTrue(queue.markUrgent(3, 1));
+        assertFalse(queue.markUrgent(3, 2));
+
+        assertEquals(3, take(queue));
+        assertEquals(2, take(queue));
+        assertEquals(1, take(queue));
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void withoutHotnessQueueIsFifo() throws InterruptedException {
+        final CompileQueue queue = new CompileQueue(null, null);
+        for (long id = 1; id <= 5; id++) {
+            queue.offer(request(queue, id, 2));
+        }
+        for (long id = 1; id <= 5; id++) {
+            assertEquals(id, take(queue));
+        }
+    }
+
+    @Test
+    @Timeout(5)
+    void coldRequestsAreCancelled() throws InterruptedException {
+        final long coldAfter = 10_000_000;
+        final CompileQueue queue = queue(coldAfter);
+        queue.offer(request(queue, 1, 1));
+        queue.offer(request(queue, 2, 1));
+        queue.offer(request(queue, 3, 1));
+        queue.markUrgent(3, 1);
+        TestLevels.sleepNanos(2 * coldAfter);
+        hotness.put(2L, (long) HotnessProfiler.FLUSH_INTERVAL);
+
+        assertEquals(3, take(queue));
+        assertEquals(List.of(1L), cancelled);
+        assertEquals(2, take(queue));
+        assertEquals(0, queue.size());
+    }
+}
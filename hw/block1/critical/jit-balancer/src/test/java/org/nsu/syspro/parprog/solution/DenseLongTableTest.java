@@ -0,0 +1,84 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DenseLongTableTest {
+
+    private static final class Value {
+        final long id;
+
+        Value(long id) {
+            this.id = id;
+        }
+    }
+
+    @Test
+    void denseAndSparseIdsAreBothStored() {
+        final DenseLongTable<Value> table = new DenseLongTable<>(4, v -> v.id);
+        final long[] ids = {0, 1, DenseLongTable.CHUNK_SIZE, DenseLongTable.MAX_DENSE_ID - 1,
+                DenseLongTable.MAX_DENSE_ID, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        for (long id : ids) {
+            assertNull(table.get(id));
+            final Value v = table.computeIfAbsent(id, Value::new);
+            assertSame(v, table.get(id));
+            assertSame(v, table.computeIfAbsent(id, Value::new));
+        }
+        assertEquals(ids.length, table.size());
+        assertNull(table.get(2));
+
+        final ArrayList<Long> visited = new ArrayList<>();
+        table.forEach(v -> visited.add(v.id));
+        assertEquals(ids.length, visited.size());
+        for (long id : ids) {
+            assertTrue(visited.contains(id), "missing " + id);
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void racingInsertionsAgreeOnOneValue() throws Exception {
+        final DenseLongTable<Value> table = new DenseLongTable<>(4, v -> v.id);
+        final int N = 8;
+        final int IDS = 4 * DenseLongTable.CHUNK_SIZE;
+        final CyclicBarrier start = new CyclicBarrier(N);
+        final AtomicInteger mismatches = new AtomicInteger(0);
+        final Value[][] seen = new Value[N][IDS];
+        final ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < N; i++) {
+            final int thread = i;
+            final Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+                for (int id = 0; id < IDS; id++) {
+                    seen[thread][id] = table.computeIfAbsent(id, Value::new);
+                    if (table.get(id) != seen[thread][id]) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(0, mismatches.get());
+        assertEquals(IDS, table.size());
+        for (int id = 0; id < IDS; id++) {
+            for (int i = 1; i < N; i++) {
+                assertSame(seen[0][id], seen[i][id]);
+            }
+        }
+    }
+}
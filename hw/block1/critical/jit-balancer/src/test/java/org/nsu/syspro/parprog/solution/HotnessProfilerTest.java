@@ -0,0 +1,62 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HotnessProfilerTest {
+
+    @Test
+    void longLongMapCountsWithoutLosingKeys() {
+        final LongLongMap map = new LongLongMap(1);
+        for (long key = -500; key < 500; key++) {
+            for (int i = 0; i <= (key & 7); i++) {
+                map.increment(key * 1_000_003L);
+            }
+        }
+        assertEquals(1_000, map.size());
+        for (long key = -500; key < 500; key++) {
+            assertEquals((key & 7) + 1, map.get(key * 1_000_003L));
+        }
+        assertEquals(0, map.get(42));
+    }
+
+    @Test
+    @Timeout(5)
+    void stripesMergeIntoGlobalView() throws InterruptedException {
+        final HotnessProfiler profiler = new HotnessProfiler();
+
+        final int THREADS = 8;
+        final int METHODS = 4;
+        final int INVOCATIONS = 20_000;
+        final ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final Thread t = new Thread(() -> {
+                final HotnessProfiler.Stripe stripe = profiler.newStripe();
+                for (long m = 0; m < METHODS; m++) {
+                    final long id = m;
+                    final MethodID method = () -> id;
+                    for (int j = 0; j < INVOCATIONS; j++) {
+                        stripe.record(method);
+                    }
+                    assertEquals(INVOCATIONS, stripe.count(id));
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        for (long m = 0; m < METHODS; m++) {
+            final long global = profiler.globalCount(m);
+            assertTrue(global <= (long) THREADS * INVOCATIONS);
+            assertTrue(global > (long) THREADS * (INVOCATIONS - HotnessProfiler.FLUSH_INTERVAL));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.junit.jupiter.api.Test;
+import org.nsu.syspro.parprog.external.CompiledMethod;
+import org.nsu.syspro.parprog.external.MethodID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InlineCacheTest {
+
+    private static CodeCache.CompiledCode code(long id) {
+        return code(2, id);
+    }
+
+    private static CodeCache.CompiledCode code(int level, long id) {
+        final MethodID method = () -> id;
+        final CompiledMethod compiled = () -> method;
+        return new CodeCache.CompiledCode(level, compiled);
+    }
+
+    @Test
+    void directMappedSlotsAreOverwritten() {
+        final InlineCache cache = new InlineCache(3);
+        assertEquals(4, cache.slots());
+        assertNull(cache.get(0));
+
+        final CodeCache.CompiledCode first = code(0);
+        cache.put(0, first);
+        assertSame(first, cache.get(0));
+
+        // some of the next 4 methods share the slot with method 0
+        for (long id = 1; id <= cache.slots(); id++) {
+            cache.put(id, code(id));
+            assertEquals(id, cache.get(id).method.id().id());
+        }
+        int hits = 0;
+        for (long id = 0; id <= cache.slots(); id++) {
+            final CodeCache.CompiledCode c = cache.get(id);
+            if (c != null) {
+                assertEquals(id, c.method.id().id());
+                hits++;
+            }
+        }
+        assertTrue(hits <= cache.slots());
+    }
+
+    @Test
+    void revalidationUpgradesLowerLevels() {
+        final InlineCache cache = new InlineCache(16);
+        final CodeCache codeCache = new CodeCache();
+        final CodeCache.CompiledCode l1 = codeCache.publish(1, code(1, 1).method);
+        final CodeCache.CompiledCode l2 = codeCache.publish(2, code(2, 2).method);
+        cache.put(1, l1);
+        cache.put(2, l2);
+
+        cache.revalidate(codeCache, c -> fail("nothing better was published"));
+        assertSame(l1, cache.get(1));
+
+        final CodeCache.CompiledCode better = codeCache.publish(2, code(2, 1).method);
+        final int[] accepted = {0};
+        cache.revalidate(codeCache, c -> {
+            accepted[0]++;
+            return c;
+        });
+        assertEquals(1, accepted[0]);
+        assertSame(better, cache.get(1));
+        assertSame(l2, cache.get(2));
+    }
+}
@@ -0,0 +1,100 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProfileSnapshotTest {
+
+    private static MethodID method(long id) {
+        return () -> id;
+    }
+
+    private static void invoke(JitRuntime runtime, long id, int times) {
+        final HotnessProfiler.Stripe stripe = runtime.profiler.newStripe();
+        final MethodID m = method(id);
+        for (int i = 0; i < times; i++) {
+            stripe.record(m);
+        }
+    }
+
+    @Test
+    void segmentsAreMergedLatestFirst(@TempDir Path dir) throws IOException {
+        final Path file = dir.resolve("profile.jit");
+        final CompilationServiceTest.CountingCompiler compiler = new CompilationServiceTest.CountingCompiler(0);
+
+        final JitRuntime first = new JitRuntime(compiler, new CodeCache(), 1);
+        invoke(first, 1, 640);
+        invoke(first, 2, 6_400);
+        first.codeCache.publish(2, compiler.compile_l2(method(2)));
+        first.saveProfile(file);
+
+        invoke(first, 1, 64_000);
+        first.codeCache.publish(1, compiler.compile_l1(method(1)));
+        first.codeCache.publish(1, compiler.compile_l1(method(3)));
+        first.saveProfile(file);
+
+        final ProfileSnapshot snapshot = ProfileSnapshot.read(file);
+        assertEquals(3, snapshot.size());
+        // hottest first
+        assertEquals(1, snapshot.methodId(0));
+        assertEquals(64_640, snapshot.invocations(0));
+        assertEquals(1, snapshot.tier(0));
+        assertEquals(2, snapshot.methodId(1));
+        assertEquals(2, snapshot.tier(1));
+        assertEquals(3, snapshot.methodId(2));
+        assertEquals(0, snapshot.invocations(2));
+    }
+
+    @Test
+    @Timeout(5)
+    void warmStartSchedulesCompilations(@TempDir Path dir) throws IOException {
+        final Path file = dir.resolve("profile.jit");
+        final CompilationServiceTest.CountingCompiler compiler = new CompilationServiceTest.CountingCompiler(0);
+        final JitRuntime previous = new JitRuntime(compiler, new CodeCache(), 1);
+        invoke(previous, 1, 64); // cold
+        invoke(previous, 2, (int) JitRuntime.WARM_START_MIN_INVOCATIONS + 64); // hot, not compiled yet
+        previous.codeCache.publish(2, compiler.compile_l2(method(3)));
+        previous.saveProfile(file);
+
+        final JitRuntime next = new JitRuntime(new CompilationServiceTest.CountingCompiler(0), new CodeCache(), 1);
+        assertEquals(2, next.warmStart(file, id -> (id == 4) ? null : method(id)));
+        next.compilationService.await(method(2), 1);
+        next.compilationService.await(method(3), 2);
+        assertNull(next.codeCache.code(1));
+        assertEquals(1, next.codeCache.code(2).level);
+        assertEquals(2, next.codeCache.code(3).level);
+    }
+
+    @Test
+    void rejectsForeignAndUncommittedData(@TempDir Path dir) throws IOException {
+        final Path file = dir.resolve("profile.jit");
+        final JitRuntime runtime = new JitRuntime(new CompilationServiceTest.CountingCompiler(0), new CodeCache(), 1);
+        invoke(runtime, 1, 64);
+        runtime.saveProfile(file);
+
+        // garbage after the committed segments, e.g. interrupted dump, is ignored
+        Files.write(file, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+        assertEquals(1, ProfileSnapshot.read(file).size());
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(4).putInt(0, ProfileSnapshot.VERSION + 1), 4);
+        }
+        final IOException e = assertThrows(IOException.class, () -> ProfileSnapshot.read(file));
+        assertTrue(e.getMessage().contains("Unsupported JIT profile version"));
+
+        final Path foreign = dir.resolve("foreign");
+        Files.write(foreign, new byte[32]);
+        assertThrows(IOException.class, () -> ProfileSnapshot.read(foreign));
+    }
+}
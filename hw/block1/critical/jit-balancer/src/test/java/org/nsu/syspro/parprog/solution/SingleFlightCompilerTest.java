@@ -0,0 +1,82 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.nsu.syspro.parprog.external.CompiledMethod;
+import org.nsu.syspro.parprog.external.MethodID;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightCompilerTest {
+
+    @Test
+    @Timeout(5)
+    void concurrentRequestersShareOneCompilation() throws InterruptedException {
+        final CompilationServiceTest.CountingCompiler compiler = new CompilationServiceTest.CountingCompiler(50_000_000);
+        final CodeCache cache = new CodeCache();
+        final ExecutorService pool = Executors.newSingleThreadExecutor();
+        final SingleFlightCompiler singleFlight = new SingleFlightCompiler(compiler, cache, new TierStatistics(),
+                (method, level, compilation) -> pool.execute(compilation));
+
+        final MethodID method = () -> 42L;
+        final int N = 100;
+        final CyclicBarrier start = new CyclicBarrier(N);
+        final List<CompletableFuture<CompiledMethod>> futures = new CopyOnWriteArrayList<>();
+        final AtomicLong maxRequestNanos = new AtomicLong(0);
+        final ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < N; i++) {
+            final Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException | BrokenBarrierException e) {
+                    throw new RuntimeException(e);
+                }
+                final long before = System.nanoTime();
+                futures.add(singleFlight.compile(method, 1));
+                maxRequestNanos.accumulateAndGet(System.nanoTime() - before, Math::max);
+            });
+            t.start();
+            threads.add(t);
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(N, futures.size());
+        // requesters are not blocked by the compilation which takes 50ms
+        assertTrue(maxRequestNanos.get() < 40_000_000, "request took " + maxRequestNanos.get() + "ns");
+        assertNotNull(singleFlight.inFlight(42L, 1));
+        futures.forEach(f -> assertSame(futures.get(0), f));
+
+        final CompiledMethod code = futures.get(0).join();
+        assertEquals(1, compiler.compilations.get(42L).get());
+        assertSame(code, cache.code(42L).method);
+
+        // finished flight leaves the registry, published code is reused instead of compiling again
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.SECONDS));
+        assertNull(singleFlight.inFlight(42L, 1));
+        assertSame(code, singleFlight.compile(method, 1).join());
+        assertEquals(1, compiler.compilations.get(42L).get());
+    }
+
+    @Test
+    void callerThreadSchedulerCompilesInPlace() {
+        final CompilationServiceTest.CountingCompiler compiler = new CompilationServiceTest.CountingCompiler(0);
+        final CodeCache cache = new CodeCache();
+        final SingleFlightCompiler singleFlight = new SingleFlightCompiler(compiler, cache, new TierStatistics(),
+                (method, level, compilation) -> compilation.run());
+
+        final MethodID method = () -> 7L;
+        assertTrue(singleFlight.compile(method, 2).isDone());
+        assertSame(Thread.currentThread(), compiler.compiledBy.get(7L));
+        // L2 is published, L1 request is satisfied by better code
+        assertSame(cache.code(7L).method, singleFlight.compile(method, 1).join());
+        assertEquals(1, compiler.compilations.get(7L).get());
+    }
+}
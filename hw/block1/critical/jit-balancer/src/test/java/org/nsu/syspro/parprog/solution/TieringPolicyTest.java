@@ -0,0 +1,152 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.junit.jupiter.api.Test;
+import org.nsu.syspro.parprog.TieringPolicy;
+import org.nsu.syspro.parprog.TieringPolicy.Tier;
+import org.nsu.syspro.parprog.external.MethodID;
+import org.nsu.syspro.parprog.helpers.TestLevels;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TieringPolicyTest {
+
+    static final class FakeProfile implements TieringPolicy.Profile {
+        long local;
+        long global;
+        Tier available = Tier.INTERPRETER;
+        final long[] compile = {-1, -1, -1};
+        final long[] execute = {-1, -1, -1};
+        final long[] queue = {-1, -1, -1};
+
+        @Override
+        public long localInvocations() {
+            return local;
+        }
+
+        @Override
+        public long globalInvocations() {
+            return global;
+        }
+
+        @Override
+        public Tier available() {
+            return available;
+        }
+
+        @Override
+        public long compileNanos(Tier tier) {
+            return compile[tier.ordinal()];
+        }
+
+        @Override
+        public long executeNanos(Tier tier) {
+            return execute[tier.ordinal()];
+        }
+
+        @Override
+        public long queueNanos(Tier tier) {
+            return queue[tier.ordinal()];
+        }
+    }
+
+    private static final MethodID method = () -> 1L;
+
+    @Test
+    void thresholdPolicyUsesBestKnownCounter() {
+        final TieringPolicy policy = new ThresholdTieringPolicy(10, 100);
+        final FakeProfile p = new FakeProfile();
+        p.local = 9;
+        assertEquals(Tier.INTERPRETER, policy.decide(method, p));
+        p.global = 10;
+        assertEquals(Tier.L1, policy.decide(method, p));
+        p.local = 100;
+        assertEquals(Tier.L2, policy.decide(method, p));
+    }
+
+    @Test
+    void ratePolicyReactsOnlyToFrequentInvocations() {
+        final long window = 50_000_000;
+        final TieringPolicy policy = new RateTieringPolicy(window, 256, 1_024);
+        final FakeProfile p = new FakeProfile();
+
+        // slow: one sample per window
+        for (int i = 1; i <= 4; i++) {
+            p.local = (long) i * RateTieringPolicy.SAMPLE_INTERVAL;
+            assertEquals(Tier.INTERPRETER, policy.decide(method, p));
+            TestLevels.sleepNanos(window);
+        }
+
+        // fast: many invocations within a single window
+        final MethodID hot = () -> 2L;
+        final FakeProfile q = new FakeProfile();
+        for (q.local = 1; q.local <= 2_048; q.local++) {
+            policy.decide(hot, q);
+        }
+        assertEquals(Tier.L2, policy.decide(hot, q));
+    }
+
+    @Test
+    void costModelComparesSavedTimeWithCompileTime() {
+        final TieringPolicy never = (m, p) -> Tier.INTERPRETER;
+        final TieringPolicy policy = new CostModelTieringPolicy(1.0,
+                new long[]{0, 1_000, 1_000_000},
+                new long[]{100, 50, 10},
+                never);
+        final FakeProfile p = new FakeProfile();
+
+        p.local = 10; // saves 10 * 50ns for L1, less than 1us
+        assertEquals(Tier.INTERPRETER, policy.decide(method, p));
+        p.local = 20; // 20 * 50ns = 1us pays for L1
+        assertEquals(Tier.L1, policy.decide(method, p));
+        p.local = 11_112; // 11112 * 90ns > 1ms pays for L2
+        assertEquals(Tier.L2, policy.decide(method, p));
+
+        // measured costs override defaults: L2 compilation is very cheap now
+        p.local = 20;
+        p.compile[2] = 100;
+        assertEquals(Tier.L2, policy.decide(method, p));
+
+        // no benefit from L1 at all, only backstop decides
+        p.available = Tier.L1;
+        p.execute[1] = 10;
+        p.execute[2] = 10;
+        assertEquals(Tier.INTERPRETER, policy.decide(method, p));
+    }
+
+    @Test
+    void l1IsSkippedWhenItCannotPayOffBeforeL2() {
+        final L1SkipTieringPolicy policy = L1SkipTieringPolicy.withDefaults(new ThresholdTieringPolicy(10, 100), 100);
+
+        // L1 compiles as long as L2: L1 code would serve only the 36 invocations left before the L2 threshold,
+        // which saves 36 * 70ns, less than the L1 compilation
+        final FakeProfile p = new FakeProfile();
+        p.compile[1] = 1_000_000;
+        p.compile[2] = 1_000_000;
+        p.local = 9;
+        assertEquals(Tier.INTERPRETER, policy.decide(method, p));
+        for (p.local = 10; p.local < L1SkipTieringPolicy.SAMPLE_INTERVAL; p.local++) {
+            assertEquals(Tier.INTERPRETER, policy.decide(method, p)); // measuring the rate
+        }
+        assertEquals(Tier.L2, policy.decide(method, p));
+        assertEquals(Tier.L2, policy.decision(method.id()));
+
+        // cheap L1 serves while L2 compiles for 1ms
+        final MethodID cheap = () -> 2L;
+        final FakeProfile q = new FakeProfile();
+        q.compile[1] = 100;
+        q.compile[2] = 1_000_000;
+        for (q.local = 10; q.local < L1SkipTieringPolicy.SAMPLE_INTERVAL; q.local++) {
+            policy.decide(cheap, q);
+        }
+        assertEquals(Tier.L1, policy.decide(cheap, q));
+
+        assertEquals(1, policy.skipped());
+        assertEquals(1, policy.kept());
+
+        // other decisions of the delegate pass through
+        q.available = Tier.L1;
+        assertEquals(Tier.L1, policy.decide(cheap, q));
+        q.local = 100;
+        assertEquals(Tier.L2, policy.decide(cheap, q));
+    }
+}
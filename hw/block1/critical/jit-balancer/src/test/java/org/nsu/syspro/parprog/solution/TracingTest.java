@@ -0,0 +1,96 @@
+package org.nsu.syspro.parprog.solution;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.nsu.syspro.parprog.TieringPolicy.Tier;
+import org.nsu.syspro.parprog.external.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TracingTest {
+
+    private static final ExecutionResult RESULT = new ExecutionResult() {
+    };
+
+    private static final ExecutionEngine NOOP = new ExecutionEngine() {
+        @Override
+        public ExecutionResult interpret(MethodID id) {
+            return RESULT;
+        }
+
+        @Override
+        public ExecutionResult execute(CompiledMethod method) {
+            return RESULT;
+        }
+    };
+
+    @Test
+    void histogramBucketsHaveBoundedRelativeError() {
+        for (long v = 0; v < 1_000_000; v = v * 3 / 2 + 1) {
+            final long lower = LatencyHistogram.lowerBound(LatencyHistogram.indexOf(v));
+            assertTrue(lower <= v && v - lower <= v / LatencyHistogram.SUB_BUCKETS, v + " -> " + lower);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+
+        final LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            h.record(i * 1_000L);
+        }
+        assertEquals(100, h.count());
+        assertEquals(50_000, h.percentile(50), 50_000 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(99_000, h.percentile(99), 99_000 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(100_000, h.max(), 100_000 / LatencyHistogram.SUB_BUCKETS);
+    }
+
+    @Test
+    void ringKeepsLatestEvents() {
+        final EventTrace trace = new EventTrace(3); // rounded up to 4
+        for (int i = 0; i < 10; i++) {
+            trace.record(EventTrace.Type.COMPILATION, i, 1, i, 1);
+        }
+        assertEquals(10, trace.recorded());
+        assertEquals(List.of(6L, 7L, 8L, 9L),
+                trace.events().stream().map(e -> e.methodId).collect(Collectors.toList()));
+    }
+
+    @Test
+    @Timeout(5)
+    void wrappedEnginesRecordTiersAndTransitions() {
+        final Tracing tracing = new Tracing();
+        final CompilationEngine compiler = tracing.wrap(new CompilationServiceTest.CountingCompiler(0));
+        final ExecutionEngine exec = tracing.wrap(NOOP);
+        assertSame(tracing, Tracing.of(compiler));
+        assertNull(Tracing.of(new CompilationServiceTest.CountingCompiler(0)));
+
+        final CodeCache cache = new CodeCache();
+        final CompilationService service = new CompilationService(compiler, cache, 1);
+        final MethodID method = () -> 5L;
+
+        exec.interpret(method);
+        exec.interpret(method);
+        exec.execute(service.submit(method, 1).join());
+        exec.execute(service.submit(method, 2).join());
+        exec.execute(service.submit(method, 2).join());
+
+        assertEquals(2, tracing.execution(Tier.INTERPRETER).count());
+        assertEquals(1, tracing.execution(Tier.L1).count());
+        assertEquals(2, tracing.execution(Tier.L2).count());
+        assertEquals(1, tracing.compilation(Tier.L1).count());
+        assertEquals(1, tracing.compilation(Tier.L2).count());
+        assertEquals(2, tracing.queueWait().count());
+        assertEquals(2, tracing.method(5L, Tier.L2).count());
+        assertNull(tracing.method(6L, Tier.L2));
+
+        final List<Integer> transitions = tracing.trace.events().stream()
+                .filter(e -> e.type == EventTrace.Type.TIER_TRANSITION)
+                .map(e -> e.level)
+                .collect(Collectors.toList());
+        assertEquals(List.of(0, 1, 2), transitions);
+
+        assertTrue(tracing.toChromeTrace().contains("\"name\": \"compilation L2\""));
+        assertTrue(tracing.toJson().contains("\"queue_wait\": {\"count\": 2"));
+    }
+}
@@ -0,0 +1,42 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.base.*;
+import org.nsu.syspro.parprog.interfaces.Fork;
+
+/**
+ * {@link Fork} implementations under comparison.
+ */
+public enum ForkKind {
+    DEFAULT {
+        @Override
+        Fork create() {
+            return new DefaultFork();
+        }
+    },
+    TAS {
+        @Override
+        Fork create() {
+            return new TasFork();
+        }
+    },
+    TTAS {
+        @Override
+        Fork create() {
+            return new TtasFork();
+        }
+    },
+    CLH {
+        @Override
+        Fork create() {
+            return new ClhFork();
+        }
+    },
+    MCS {
+        @Override
+        Fork create() {
+            return new McsFork();
+        }
+    };
+
+    abstract Fork create();
+}
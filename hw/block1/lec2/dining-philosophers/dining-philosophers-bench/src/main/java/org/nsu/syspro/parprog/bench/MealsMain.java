@@ -0,0 +1,117 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.base.DiningTable;
+import org.nsu.syspro.parprog.base.ExecutionMode;
+import org.nsu.syspro.parprog.base.MealCounters;
+import org.nsu.syspro.parprog.examples.DefaultPhilosopher;
+import org.nsu.syspro.parprog.examples.FairShareStrategy;
+import org.nsu.syspro.parprog.interfaces.DiningStrategy;
+import org.nsu.syspro.parprog.interfaces.Fork;
+
+import java.util.LongSummaryStatistics;
+
+/**
+ * Compares {@link ForkKind forks} and {@link StrategyKind strategies} by meals per second of a whole table.
+ * Configured by system properties:
+ * <ul>
+ *     <li> {@code bench.forks}: fork kinds (default all of {@link ForkKind});
+ *     <li> {@code bench.strategies}: strategy kinds (default {@code PHILOSOPHER}), {@code bench.fairShare=true} wraps
+ *     them into {@link FairShareStrategy};
+ *     <li> {@code bench.sizes}: numbers of philosophers (default {@code 2,4,8,16,32,64});
+ *     <li> {@code bench.seconds}: measured dinner length (default {@code 2}), every measured dinner is preceded by a
+ *     {@code bench.warmup} seconds long one (default {@code 1}) on a fresh table;
+ *     <li> {@code bench.padded}: {@code true} (default) lets philosophers count meals in the padded
+ *     {@link MealCounters} of the table, {@code false} keeps them in fields of philosophers, which share cache lines;
+ *     {@code bench.padded=true,false} measures both;
+ *     <li> {@code bench.mode}: {@link ExecutionMode execution modes} (default {@code PLATFORM_THREADS}),
+ *     {@code WORKER_POOL} needs {@code bench.strategies=PHILOSOPHER}.
+ * </ul>
+ * Prints total meals per second and {@code maxMeals / minMeals} (fairness) for every combination.
+ * <br>
+ * Example: {@code java -Dbench.sizes=8,64 -Dbench.forks=DEFAULT,MCS -Dbench.strategies=ORDERING,CHANDY_MISRA -jar target/benchmarks.jar}
+ */
+public final class MealsMain {
+
+    private MealsMain() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final String[] forks = System.getProperty("bench.forks", names(ForkKind.values())).split(",");
+        final String[] strategies = System.getProperty("bench.strategies", StrategyKind.PHILOSOPHER.name()).split(",");
+        final boolean fairShare = Boolean.getBoolean("bench.fairShare");
+        final String[] sizes = System.getProperty("bench.sizes", "2,4,8,16,32,64").split(",");
+        final int seconds = Integer.getInteger("bench.seconds", 2);
+        final int warmup = Integer.getInteger("bench.warmup", 1);
+        final String[] padding = System.getProperty("bench.padded", "true").split(",");
+        final String[] modes = System.getProperty("bench.mode", ExecutionMode.PLATFORM_THREADS.name()).split(",");
+
+        System.out.printf("%-16s %-8s %-12s %6s %7s %15s %10s%n",
+                "mode", "fork", "strategy", "padded", "N", "meals/s", "max/min");
+        for (String m : modes) {
+            final ExecutionMode mode = ExecutionMode.valueOf(m.trim());
+            for (String size : sizes) {
+                final int n = Integer.parseInt(size.trim());
+                for (String s : strategies) {
+                    final StrategyKind strategy = StrategyKind.valueOf(s.trim());
+                    for (String f : forks) {
+                        final ForkKind kind = ForkKind.valueOf(f.trim());
+                        for (String p : padding) {
+                            final boolean padded = Boolean.parseBoolean(p.trim());
+                            if (warmup > 0) {
+                                dine(table(mode, kind, strategy, fairShare, padded, n), warmup);
+                            }
+                            final LongSummaryStatistics meals =
+                                    dine(table(mode, kind, strategy, fairShare, padded, n), seconds).mealStatistics();
+                            System.out.printf("%-16s %-8s %-12s %6s %7d %15.0f %10.2f%n",
+                                    mode, kind, strategy, padded, n,
+                                    (double) meals.getSum() / seconds,
+                                    (double) meals.getMax() / Math.max(1, meals.getMin()));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts meals in its own field, as all philosophers did before {@link MealCounters}.
+     */
+    static final class UnpaddedPhilosopher extends DefaultPhilosopher {
+        @Override
+        protected void seat(MealCounters counters, int index) {
+        }
+    }
+
+    static DiningTable<DefaultPhilosopher, Fork> table(ExecutionMode mode, ForkKind kind, StrategyKind strategyKind,
+                                                       boolean fairShare, boolean padded, int n) {
+        final DiningStrategy strategy = strategyKind.create();
+        final DiningStrategy wrapped = (fairShare && strategy != null) ? new FairShareStrategy(strategy) : strategy;
+        // captured `kind` and `padded` are assigned before the super constructor calls createFork and createPhilosopher
+        return new DiningTable<>(n, wrapped, mode) {
+            @Override
+            public Fork createFork() {
+                return kind.create();
+            }
+
+            @Override
+            public DefaultPhilosopher createPhilosopher() {
+                return padded ? new DefaultPhilosopher() : new UnpaddedPhilosopher();
+            }
+        };
+    }
+
+    static <T extends DiningTable<?, ?>> T dine(T table, int seconds) throws InterruptedException {
+        table.start();
+        Thread.sleep(seconds * 1000L);
+        table.stop();
+        return table;
+    }
+
+    private static String names(Enum<?>[] values) {
+        final StringBuilder sb = new StringBuilder();
+        for (Enum<?> k : values) {
+            sb.append((sb.length() == 0) ? "" : ",").append(k);
+        }
+        return sb.toString();
+    }
+}
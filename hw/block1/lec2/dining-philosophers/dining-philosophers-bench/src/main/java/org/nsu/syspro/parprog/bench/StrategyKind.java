@@ -0,0 +1,45 @@
+package org.nsu.syspro.parprog.bench;
+
+import org.nsu.syspro.parprog.examples.ChandyMisraStrategy;
+import org.nsu.syspro.parprog.examples.DefaultPhilosopher;
+import org.nsu.syspro.parprog.examples.RandomizedBackoffStrategy;
+import org.nsu.syspro.parprog.examples.ResourceOrderingStrategy;
+import org.nsu.syspro.parprog.interfaces.DiningStrategy;
+
+/**
+ * {@link DiningStrategy strategies} under comparison.
+ */
+public enum StrategyKind {
+    /**
+     * No table strategy, {@link DefaultPhilosopher#onHungry} decides.
+     */
+    PHILOSOPHER {
+        @Override
+        DiningStrategy create() {
+            return null;
+        }
+    },
+    ORDERING {
+        @Override
+        DiningStrategy create() {
+            return new ResourceOrderingStrategy();
+        }
+    },
+    CHANDY_MISRA {
+        @Override
+        DiningStrategy create() {
+            return new ChandyMisraStrategy();
+        }
+    },
+    BACKOFF {
+        @Override
+        DiningStrategy create() {
+            return new RandomizedBackoffStrategy();
+        }
+    };
+
+    /**
+     * @return fresh strategy for one table, or {@code null}
+     */
+    abstract DiningStrategy create();
+}
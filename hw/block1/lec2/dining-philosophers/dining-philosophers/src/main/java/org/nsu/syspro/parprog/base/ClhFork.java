@@ -0,0 +1,67 @@
+package org.nsu.syspro.parprog.base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * CLH queue lock: waiters form an implicit FIFO queue, every waiter spins on the node of its predecessor only, so a
+ * release invalidates the cache line of exactly one waiter. FIFO order also makes the fork fair.
+ * <br>
+ * Weak points: a node is allocated per acquire (the classic trick of recycling the predecessor's node needs a
+ * per-thread node per fork); a preempted waiter blocks everybody queued behind it.
+ */
+public class ClhFork extends SpinFork {
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            TAIL = MethodHandles.lookup().findVarHandle(ClhFork.class, "tail", Node.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final class Node {
+        volatile boolean locked;
+
+        Node(boolean locked) {
+            this.locked = locked;
+        }
+    }
+
+    private volatile Node tail = new Node(false); // via TAIL
+    private Node holder; // written and read by the lock holder only
+
+    @Override
+    protected void lock() {
+        final Node node = new Node(true);
+        final Node pred = (Node) TAIL.getAndSet(this, node);
+        int spins = 0;
+        while (pred.locked) {
+            spins = spin(spins);
+        }
+        holder = node;
+    }
+
+    /**
+     * Succeeds only if the lock is free and nobody is queued: then the tail is the node of the last release.
+     */
+    @Override
+    protected boolean tryLock() {
+        final Node last = tail;
+        if (last.locked) {
+            return false;
+        }
+        final Node node = new Node(true);
+        if (!TAIL.compareAndSet(this, last, node)) {
+            return false;
+        }
+        holder = node;
+        return true;
+    }
+
+    @Override
+    protected void unlock() {
+        holder.locked = false;
+    }
+}
@@ -2,6 +2,7 @@ package org.nsu.syspro.parprog.base;
 
 import org.nsu.syspro.parprog.interfaces.Fork;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -25,6 +26,28 @@ public class DefaultFork implements Fork {
     @Override
     public void acquire() {
         lock.lock();
+        acquired();
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        if (!lock.tryLock()) {
+            return false;
+        }
+        acquired();
+        return true;
+    }
+
+    @Override
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!lock.tryLock(timeout, unit)) {
+            return false;
+        }
+        acquired();
+        return true;
+    }
+
+    private void acquired() {
         final Thread thread = Thread.currentThread();
         if (owner != null) {
             throw new IllegalStateException(thread + " tries to acquire fork " + this + " which is already used by " + owner);
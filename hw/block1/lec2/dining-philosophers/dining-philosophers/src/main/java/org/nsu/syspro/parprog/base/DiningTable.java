@@ -1,56 +1,218 @@
 package org.nsu.syspro.parprog.base;
 
+import org.nsu.syspro.parprog.interfaces.DiningStrategy;
 import org.nsu.syspro.parprog.interfaces.Fork;
 import org.nsu.syspro.parprog.interfaces.Philosopher;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LongSummaryStatistics;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public abstract class DiningTable<P extends Philosopher, F extends Fork> {
+    static final int YIELD_INTERVAL = 64;
+
     private final ArrayList<F> forks;
     private final ArrayList<P> phils;
     private final ArrayList<Thread> threads;
+    private final MealCounters meals;
+    private final int[] selfCounting; // philosophers which count meals elsewhere than in meals, usually none
+    private final DiningStrategy strategy; // null: philosophers decide themselves
+    private final ExecutionMode mode;
 
     private boolean started;
     private volatile boolean shouldStop;
+    private ExecutorService workers; // WORKER_POOL only
+    private CountDownLatch finished; // WORKER_POOL only: philosophers which have seen shouldStop or failed
+    private final AtomicReference<Throwable> failure = new AtomicReference<>(); // WORKER_POOL only: the first one
 
     public DiningTable(int N) {
+        this(N, null);
+    }
+
+    /**
+     * @param strategy decides how every hungry philosopher gets its forks instead of {@link Philosopher#onHungry}
+     */
+    public DiningTable(int N, DiningStrategy strategy) {
+        this(N, strategy, ExecutionMode.fromSystemProperty());
+    }
+
+    /**
+     * @param strategy must be {@code null} in {@link ExecutionMode#WORKER_POOL} mode
+     * @throws IllegalArgumentException in {@link ExecutionMode#WORKER_POOL} mode if {@code strategy} is given or a
+     *                                  philosopher overrides {@link Philosopher#onHungry} but not
+     *                                  {@link Philosopher#tryOnHungry}, which is the only one the pool calls
+     * @throws UnsupportedOperationException if {@code mode} is not {@link ExecutionMode#isSupported() supported}
+     */
+    public DiningTable(int N, DiningStrategy strategy, ExecutionMode mode) {
         if (N < 2) {
             throw new IllegalStateException("Too small dining table");
         }
+        if (mode == ExecutionMode.WORKER_POOL && strategy != null) {
+            throw new IllegalArgumentException("Strategies may block, they are not supported by " + mode);
+        }
+        if (!mode.isSupported()) {
+            throw new UnsupportedOperationException(mode + " is not supported by this build or JDK");
+        }
 
         started = false;
         forks = new ArrayList<>(N);
         phils = new ArrayList<>(N);
         threads = new ArrayList<>(N);
+        meals = new MealCounters(N);
         for (int i = 0; i < N; i++) {
             forks.add(createFork());
-            phils.add(createPhilosopher());
+            final P p = createPhilosopher();
+            if (mode == ExecutionMode.WORKER_POOL) {
+                requireNonBlockingHook(p);
+            }
+            if (p instanceof SeatedPhilosopher) {
+                ((SeatedPhilosopher) p).seat(meals, i);
+            }
+            phils.add(p);
+        }
+        selfCounting = selfCounting(phils, meals);
+        this.strategy = strategy;
+        this.mode = mode;
+        if (strategy != null) {
+            strategy.prepare(phils, forks);
         }
     }
 
+    private static void requireNonBlockingHook(Philosopher p) {
+        final Class<?> blocking;
+        final Class<?> nonBlocking;
+        try {
+            blocking = p.getClass().getMethod("onHungry", Fork.class, Fork.class).getDeclaringClass();
+            nonBlocking = p.getClass().getMethod("tryOnHungry", Fork.class, Fork.class).getDeclaringClass();
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e); // both are members of Philosopher
+        }
+        // the more specific one is the newer override
+        if (blocking != nonBlocking && nonBlocking.isAssignableFrom(blocking)) {
+            throw new IllegalArgumentException(p.getClass().getName() + " overrides onHungry but not tryOnHungry, "
+                    + ExecutionMode.WORKER_POOL + " would skip it");
+        }
+    }
+
+    private static int[] selfCounting(ArrayList<? extends Philosopher> phils, MealCounters meals) {
+        final int[] result = new int[phils.size()];
+        int count = 0;
+        for (int i = 0; i < phils.size(); i++) {
+            final Philosopher p = phils.get(i);
+            if (!(p instanceof SeatedPhilosopher) || !((SeatedPhilosopher) p).countsIn(meals)) {
+                result[count++] = i;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
     public synchronized void start() {
         if (started) {
             throw new IllegalStateException("Restart is not supported");
         }
 
         shouldStop = false;
+        if (mode == ExecutionMode.WORKER_POOL) {
+            startWorkers();
+            started = true;
+            return;
+        }
+
+        final ThreadFactory factory = mode.threadFactory();
+        // virtual threads are never preempted: a philosopher which always gets its forks would keep its carrier
+        final boolean yieldSometimes = (mode == ExecutionMode.VIRTUAL_THREADS);
         final int N = phils.size();
+        // nobody eats until everybody is seated: released by the last philosopher, virtual ones are queued to its
+        // carrier like yielding ones, not left in the shared submission queue which JDK 21 carriers serve last
+        final CountDownLatch seated = yieldSometimes ? new CountDownLatch(N) : null;
         for (int i = 0; i < N; i++) {
             final Philosopher p = phils.get(i);
             final Fork left = forks.get(i);
             final Fork right = forks.get((i + 1) % N);
-            final Thread t = new Thread(() -> {
+            final Thread t = factory.newThread(() -> {
+                if (seated != null) {
+                    seated.countDown();
+                    try {
+                        seated.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                int turns = 0;
                 while (!shouldStop) {
-                    p.onHungry(left, right);
+                    if (strategy != null) {
+                        strategy.onHungry(p, left, right);
+                    } else {
+                        p.onHungry(left, right);
+                    }
+                    if (yieldSometimes && ++turns % YIELD_INTERVAL == 0) {
+                        Thread.yield();
+                    }
                 }
             });
-            t.start();
             threads.add(t);
         }
+        threads.forEach(Thread::start);
 
         started = true;
     }
 
+    private void startWorkers() {
+        final int N = phils.size();
+        workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        finished = new CountDownLatch(N);
+        for (int i = 0; i < N; i++) {
+            workers.execute(new Meal(phils.get(i), forks.get(i), forks.get((i + 1) % N)));
+        }
+    }
+
+    /**
+     * One {@link Philosopher#tryOnHungry attempt} to eat in {@link ExecutionMode#WORKER_POOL} mode: never blocks, and goes to the end of the queue
+     * whether it has eaten or not, so every philosopher gets its turn. A philosopher which throws leaves the table, the
+     * failure is rethrown by {@link #stop()}.
+     */
+    private final class Meal implements Runnable {
+        private final Philosopher philosopher;
+        private final Fork left;
+        private final Fork right;
+
+        Meal(Philosopher philosopher, Fork left, Fork right) {
+            this.philosopher = philosopher;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public void run() {
+            if (shouldStop) {
+                // the last meal to see it lets stop() shut the pool down, nobody reschedules after that
+                finished.countDown();
+                return;
+            }
+            try {
+                philosopher.tryOnHungry(left, right);
+            } catch (Throwable t) {
+                // nobody would see it in the pool: keep it for stop(), which must not wait for this philosopher
+                if (!failure.compareAndSet(null, t)) {
+                    failure.get().addSuppressed(t);
+                }
+                finished.countDown();
+                return;
+            }
+            workers.execute(this);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException in {@link ExecutionMode#WORKER_POOL} mode if a philosopher has failed during
+     *                               dinner, with the failure as the cause; the table is stopped anyway
+     */
     public synchronized void stop() {
         if (shouldStop) {
             throw new IllegalStateException("Repeated stop is illegal");
@@ -61,6 +223,22 @@ public abstract class DiningTable<P extends Philosopher, F extends Fork> {
         }
 
         shouldStop = true;
+        if (strategy != null) {
+            strategy.onStop();
+        }
+        if (mode == ExecutionMode.WORKER_POOL) {
+            try {
+                finished.await();
+                workers.shutdown();
+                workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            if (failure.get() != null) {
+                throw new IllegalStateException("A philosopher failed during dinner", failure.get());
+            }
+            return;
+        }
         for (Thread thread : threads) {
             try {
                 thread.join();
@@ -78,24 +256,38 @@ public abstract class DiningTable<P extends Philosopher, F extends Fork> {
         return forks.get(index);
     }
 
+    /**
+     * Meals of every philosopher, each read once without tearing: one pass over {@link MealCounters} of the table, plus
+     * {@link Philosopher#meals()} of philosophers which count meals themselves. During dinner the values are recent but
+     * not taken at one instant.
+     */
+    public long[] mealsSnapshot() {
+        final long[] result = meals.snapshot();
+        for (int i : selfCounting) {
+            result[i] = phils.get(i).meals();
+        }
+        return result;
+    }
+
+    /**
+     * @return max, min and total meals of one {@link #mealsSnapshot()}, consistent with each other unlike separate
+     * calls of {@link #maxMeals()}, {@link #minMeals()} and {@link #totalMeals()}
+     */
+    public LongSummaryStatistics mealStatistics() {
+        return Arrays.stream(mealsSnapshot())
+                .summaryStatistics();
+    }
+
     public long maxMeals() {
-        return phils.stream()
-                .mapToLong(Philosopher::meals)
-                .max()
-                .getAsLong();
+        return mealStatistics().getMax();
     }
 
     public long minMeals() {
-        return phils.stream()
-                .mapToLong(Philosopher::meals)
-                .min()
-                .getAsLong();
+        return mealStatistics().getMin();
     }
 
     public long totalMeals() {
-        return phils.stream()
-                .mapToLong(Philosopher::meals)
-                .sum();
+        return mealStatistics().getSum();
     }
 
     public abstract F createFork();
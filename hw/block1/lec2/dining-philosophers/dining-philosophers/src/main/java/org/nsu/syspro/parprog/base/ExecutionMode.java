@@ -0,0 +1,90 @@
+package org.nsu.syspro.parprog.base;
+
+import org.nsu.syspro.parprog.interfaces.Philosopher;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Decides what carries the philosophers of a {@link DiningTable}.
+ * <ul>
+ *     <li> {@link #PLATFORM_THREADS}: one platform thread per philosopher, hungry philosophers block in
+ *     {@link org.nsu.syspro.parprog.interfaces.Fork#acquire()};
+ *     <li> {@link #VIRTUAL_THREADS}: the same, but every philosopher gets a virtual thread (Java 21+), so blocking
+ *     on a fork releases the carrier and tables of 100_000 philosophers fit in memory. Virtual threads are not
+ *     preempted, so a philosopher yields after every {@code 64} turns at the table;
+ *     <li> {@link #WORKER_POOL}: a fixed pool of {@link Runtime#availableProcessors()} workers, every philosopher is
+ *     a task which {@link Philosopher#tryOnHungry tries to eat} once and reschedules itself at the end of the queue,
+ *     so a philosopher whose forks are taken yields the worker instead of blocking it.
+ * </ul>
+ * Tables created without an explicit mode use {@link #fromSystemProperty()}: {@value #PROPERTY} is {@code platform}
+ * (default) or {@code virtual}.
+ * <br>
+ * Weak points: in {@link #WORKER_POOL} mode {@link Philosopher#onHungry} and {@link
+ * org.nsu.syspro.parprog.interfaces.DiningStrategy strategies} are not used, they may block a worker forever: tables
+ * reject strategies and philosophers which override the former without {@link Philosopher#tryOnHungry}.
+ * Virtual threads are pinned to their carrier while blocked inside {@code synchronized}, so strategies waiting on
+ * monitors (e.g. {@code ChandyMisraStrategy}) lose most of the benefit.
+ */
+public enum ExecutionMode {
+    PLATFORM_THREADS,
+    VIRTUAL_THREADS,
+    WORKER_POOL;
+
+    public static final String PROPERTY = "dining.threads";
+
+    /**
+     * @return {@code false} if the module was built without Java 21 profile or runs on older JDK
+     */
+    public boolean isSupported() {
+        if (this != VIRTUAL_THREADS) {
+            return true;
+        }
+        try {
+            virtualThreadFactory();
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException for {@link #WORKER_POOL}, or for unsupported {@link #VIRTUAL_THREADS}
+     */
+    ThreadFactory threadFactory() {
+        switch (this) {
+            case PLATFORM_THREADS:
+                return Thread::new;
+            case VIRTUAL_THREADS:
+                return virtualThreadFactory();
+            default:
+                throw new UnsupportedOperationException(this + " does not create a thread per philosopher");
+        }
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            final Class<?> factory = Class.forName("org.nsu.syspro.parprog.base.VirtualThreadFactory");
+            return (ThreadFactory) factory.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 build of dining-philosophers", e);
+        }
+    }
+
+    /**
+     * @param mode {@code platform} or {@code virtual}
+     */
+    public static ExecutionMode named(String mode) {
+        switch (mode) {
+            case "platform":
+                return PLATFORM_THREADS;
+            case "virtual":
+                return VIRTUAL_THREADS;
+            default:
+                throw new IllegalArgumentException("Unknown thread mode: " + mode);
+        }
+    }
+
+    public static ExecutionMode fromSystemProperty() {
+        return named(System.getProperty(PROPERTY, "platform"));
+    }
+}
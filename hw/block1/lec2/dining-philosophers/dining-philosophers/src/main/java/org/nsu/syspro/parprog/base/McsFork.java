@@ -0,0 +1,75 @@
+package org.nsu.syspro.parprog.base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * MCS queue lock: like {@link ClhFork}, waiters form a FIFO queue, but every waiter spins on its own node and the
+ * releasing thread hands the lock over to its successor explicitly. Lock is free when the queue is empty, so an
+ * uncontended acquire is a single atomic swap and release is a single CAS.
+ * <br>
+ * Weak points: a node is allocated per acquire; release has to wait for a successor which has already joined the
+ * queue but has not linked itself yet.
+ */
+public class McsFork extends SpinFork {
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            TAIL = MethodHandles.lookup().findVarHandle(McsFork.class, "tail", Node.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final class Node {
+        volatile boolean locked;
+        volatile Node next;
+    }
+
+    private volatile Node tail; // via TAIL
+    private Node holder; // written and read by the lock holder only
+
+    @Override
+    protected void lock() {
+        final Node node = new Node();
+        final Node pred = (Node) TAIL.getAndSet(this, node);
+        if (pred != null) {
+            node.locked = true;
+            pred.next = node;
+            int spins = 0;
+            while (node.locked) {
+                spins = spin(spins);
+            }
+        }
+        holder = node;
+    }
+
+    @Override
+    protected boolean tryLock() {
+        if (tail != null) {
+            return false;
+        }
+        final Node node = new Node();
+        if (!TAIL.compareAndSet(this, null, node)) {
+            return false;
+        }
+        holder = node;
+        return true;
+    }
+
+    @Override
+    protected void unlock() {
+        final Node node = holder;
+        if (node.next == null) {
+            if (TAIL.compareAndSet(this, node, null)) {
+                return;
+            }
+            int spins = 0;
+            while (node.next == null) {
+                spins = spin(spins);
+            }
+        }
+        node.next.locked = false;
+    }
+}
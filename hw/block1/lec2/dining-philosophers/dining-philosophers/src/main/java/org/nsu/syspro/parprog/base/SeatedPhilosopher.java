@@ -0,0 +1,43 @@
+package org.nsu.syspro.parprog.base;
+
+import org.nsu.syspro.parprog.interfaces.Philosopher;
+
+/**
+ * Philosopher which counts its meals in the {@link MealCounters} of the {@link DiningTable} it sits at, so counters of
+ * neighbours do not share cache lines. Until seated, meals are counted in a field.
+ */
+public abstract class SeatedPhilosopher implements Philosopher {
+
+    private long successfulMeals; // used until seated
+    private MealCounters counters;
+    private int seat;
+
+    @Override
+    public long meals() {
+        return (counters != null) ? counters.get(seat) : successfulMeals;
+    }
+
+    @Override
+    public void countMeal() {
+        if (counters != null) {
+            counters.increment(seat);
+        } else {
+            successfulMeals++;
+        }
+    }
+
+    /**
+     * Called by the table once, before dinner: from now on meals are counted in {@code counters.get(index)}.
+     */
+    protected void seat(MealCounters counters, int index) {
+        this.counters = counters;
+        this.seat = index;
+    }
+
+    /**
+     * @return {@code true} if meals are counted in {@code counters}, i.e. {@link #seat} was not overridden to opt out
+     */
+    boolean countsIn(MealCounters counters) {
+        return this.counters == counters;
+    }
+}
@@ -0,0 +1,123 @@
+package org.nsu.syspro.parprog.base;
+
+import org.nsu.syspro.parprog.interfaces.Fork;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base of forks backed by spin locks: critical section of {@code Philosopher.eat} is just {@code countMeal()}, parking
+ * and unparking a thread costs much more than waiting for it.
+ * <br>
+ * Ownership checks of {@link DefaultFork} (acquire of a fork which is in use, release by a non-owner) are done only
+ * when {@code -Dforks.debug=true}, otherwise acquire and release are the bare lock operations.
+ * <br>
+ * Waiters spin for {@link #SPINS_BEFORE_YIELD} iterations and then yield on every iteration, so a table with more
+ * philosophers than cores still makes progress when the lock holder is preempted. On a single core spinning is
+ * pointless, waiters yield right away.
+ * <br>
+ * Timed {@link #tryAcquire(long, TimeUnit)} polls {@link #tryLock()} until the deadline: a timed waiter never joins the
+ * queue of a queue lock, so it has no place in the FIFO order.
+ */
+public abstract class SpinFork implements Fork {
+
+    public static final boolean DEBUG = Boolean.getBoolean("forks.debug");
+    static final int SPINS_BEFORE_YIELD = (Runtime.getRuntime().availableProcessors() > 1) ? 1 << 10 : 0;
+
+    private static final AtomicLong idProvider = new AtomicLong(0);
+
+    private final long id;
+    private volatile Thread owner; // DEBUG only
+
+    protected SpinFork() {
+        this.id = idProvider.getAndAdd(1);
+    }
+
+    @Override
+    public long id() {
+        return id;
+    }
+
+    @Override
+    public final void acquire() {
+        lock();
+        acquired();
+    }
+
+    @Override
+    public final boolean tryAcquire() {
+        if (!tryLock()) {
+            return false;
+        }
+        acquired();
+        return true;
+    }
+
+    @Override
+    public final boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int spins = 0;
+        while (!tryLock()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            spins = spin(spins);
+        }
+        acquired();
+        return true;
+    }
+
+    private void acquired() {
+        if (DEBUG) {
+            final Thread thread = Thread.currentThread();
+            if (owner != null) {
+                throw new IllegalStateException(thread + " tries to acquire fork " + this + " which is already used by " + owner);
+            }
+            owner = thread;
+        }
+    }
+
+    @Override
+    public final void release() {
+        if (DEBUG) {
+            final Thread thread = Thread.currentThread();
+            final Thread currentOwner = owner;
+            if (currentOwner != thread) {
+                throw new IllegalStateException(thread + " tries to release fork " + this + " which is already used by " + currentOwner);
+            }
+            owner = null;
+        }
+        unlock();
+    }
+
+    protected abstract void lock();
+
+    /**
+     * @return {@code true} if the lock was free and is now held by the caller
+     */
+    protected abstract boolean tryLock();
+
+    protected abstract void unlock();
+
+    /**
+     * One iteration of a wait loop.
+     *
+     * @return {@code spins + 1}
+     */
+    protected static int spin(int spins) {
+        if (spins < SPINS_BEFORE_YIELD) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+        return spins + 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%d)", getClass().getSimpleName(), id);
+    }
+}
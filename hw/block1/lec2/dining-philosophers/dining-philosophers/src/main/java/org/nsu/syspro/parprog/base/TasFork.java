@@ -0,0 +1,40 @@
+package org.nsu.syspro.parprog.base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Test-and-set spin lock: every waiter hammers the lock word with atomic writes, so the cache line bounces between
+ * waiters even while the lock is held. Simplest and the fastest one without contention.
+ */
+public class TasFork extends SpinFork {
+    private static final VarHandle LOCKED;
+
+    static {
+        try {
+            LOCKED = MethodHandles.lookup().findVarHandle(TasFork.class, "locked", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile boolean locked; // via LOCKED
+
+    @Override
+    protected void lock() {
+        int spins = 0;
+        while ((boolean) LOCKED.getAndSet(this, true)) {
+            spins = spin(spins);
+        }
+    }
+
+    @Override
+    protected boolean tryLock() {
+        return !(boolean) LOCKED.getAndSet(this, true);
+    }
+
+    @Override
+    protected void unlock() {
+        locked = false;
+    }
+}
@@ -0,0 +1,55 @@
+package org.nsu.syspro.parprog.base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Test-and-test-and-set spin lock with randomized exponential backoff: waiters spin on a plain read of the lock word
+ * (served from their own cache), try the atomic write only when the lock looks free, and back off for a random number
+ * of spins (up to {@link #MAX_BACKOFF}, doubled after every lost race) so they do not retry in lockstep.
+ */
+public class TtasFork extends SpinFork {
+    static final int MIN_BACKOFF = 1 << 2;
+    static final int MAX_BACKOFF = 1 << 10;
+
+    private static final VarHandle LOCKED;
+
+    static {
+        try {
+            LOCKED = MethodHandles.lookup().findVarHandle(TtasFork.class, "locked", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile boolean locked; // via LOCKED
+
+    @Override
+    protected void lock() {
+        int spins = 0;
+        int backoff = MIN_BACKOFF;
+        while (true) {
+            while (locked) {
+                spins = spin(spins);
+            }
+            if (!(boolean) LOCKED.getAndSet(this, true)) {
+                return;
+            }
+            for (int i = ThreadLocalRandom.current().nextInt(backoff); i >= 0; i--) {
+                spins = spin(spins);
+            }
+            backoff = Math.min(MAX_BACKOFF, backoff * 2);
+        }
+    }
+
+    @Override
+    protected boolean tryLock() {
+        return !locked && !(boolean) LOCKED.getAndSet(this, true);
+    }
+
+    @Override
+    protected void unlock() {
+        locked = false;
+    }
+}
@@ -0,0 +1,143 @@
+package org.nsu.syspro.parprog.examples;
+
+import org.nsu.syspro.parprog.interfaces.DiningStrategy;
+import org.nsu.syspro.parprog.interfaces.Fork;
+import org.nsu.syspro.parprog.interfaces.Philosopher;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chandy–Misra "hygienic" solution: every fork is owned by one of its two philosophers and is either clean or dirty.
+ * <ul>
+ *     <li> initially every fork is dirty and owned by the philosopher with the smaller seat number, so the "who yields
+ *     to whom" graph is acyclic;
+ *     <li> a philosopher which needs a fork sends a request (sets the request flag of the fork) and waits;
+ *     <li> a dirty fork which is not being eaten with is handed over on request, cleaned; a clean fork is kept by its
+ *     owner until it eats;
+ *     <li> after a meal both forks become dirty and are handed over right away if the neighbour has requested them.
+ * </ul>
+ * Messages are flags of a per-fork monitor, requesters wait on it. Since a philosopher which has just eaten yields
+ * every requested fork, neighbours alternate under contention: the strategy is fair by construction and does not
+ * rely on the fairness of the forks, which are never contended.
+ * <br>
+ * Weak points: a fork handover is a wait/notify, which is much slower than an uncontended lock; one strategy instance
+ * serves exactly the table it was {@link #prepare prepared} for.
+ */
+public class ChandyMisraStrategy implements DiningStrategy {
+
+    private static final class ForkState {
+        final Philosopher left; // the philosopher whose right fork it is
+        final Philosopher right; // the philosopher whose left fork it is
+        // guarded by this
+        Philosopher owner;
+        boolean dirty = true;
+        boolean requested;
+        boolean eating;
+
+        ForkState(Philosopher left, Philosopher right, Philosopher owner) {
+            this.left = left;
+            this.right = right;
+            this.owner = owner;
+        }
+
+        Philosopher other(Philosopher p) {
+            return (p == left) ? right : left;
+        }
+
+        void handOver() {
+            owner = other(owner);
+            dirty = false;
+            requested = false;
+            notifyAll();
+        }
+    }
+
+    // written by prepare only, read-only during dinner
+    private final Map<Fork, ForkState> states = new IdentityHashMap<>();
+
+    @Override
+    public void prepare(List<? extends Philosopher> philosophers, List<? extends Fork> forks) {
+        final int N = forks.size();
+        for (int i = 0; i < N; i++) {
+            final Philosopher left = philosophers.get((i + N - 1) % N);
+            final Philosopher right = philosophers.get(i);
+            states.put(forks.get(i), new ForkState(left, right, philosophers.get(Math.min(i, (i + N - 1) % N))));
+        }
+    }
+
+    @Override
+    public void onHungry(Philosopher philosopher, Fork left, Fork right) {
+        final ForkState l = state(left);
+        final ForkState r = state(right);
+        while (true) {
+            obtain(philosopher, l);
+            obtain(philosopher, r);
+            // a dirty fork of our own may have been taken away while we waited for the other one
+            if (startEating(philosopher, l)) {
+                if (startEating(philosopher, r)) {
+                    break;
+                }
+                finishEating(l, false);
+            }
+        }
+
+        try {
+            philosopher.eat(left, right);
+        } finally {
+            finishEating(l, true);
+            finishEating(r, true);
+        }
+    }
+
+    private ForkState state(Fork fork) {
+        final ForkState s = states.get(fork);
+        if (s == null) {
+            throw new IllegalStateException(fork + " does not belong to the prepared table");
+        }
+        return s;
+    }
+
+    private static void obtain(Philosopher p, ForkState s) {
+        synchronized (s) {
+            if (s.owner == p && s.dirty && s.requested) {
+                s.handOver(); // neighbour asked first, its turn
+            }
+            while (s.owner != p) {
+                if (s.dirty && !s.eating) {
+                    s.handOver(); // owner has not answered yet, the answer is known anyway
+                    break;
+                }
+                s.requested = true;
+                try {
+                    s.wait();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+    private static boolean startEating(Philosopher p, ForkState s) {
+        synchronized (s) {
+            if (s.owner != p) {
+                return false;
+            }
+            s.eating = true;
+            return true;
+        }
+    }
+
+    private static void finishEating(ForkState s, boolean ate) {
+        synchronized (s) {
+            s.eating = false;
+            if (ate) {
+                s.dirty = true;
+            }
+            if (s.dirty && s.requested) {
+                s.handOver();
+            }
+        }
+    }
+}
@@ -1,34 +1,31 @@
 package org.nsu.syspro.parprog.examples;
 
+import org.nsu.syspro.parprog.base.SeatedPhilosopher;
+import org.nsu.syspro.parprog.interfaces.DiningStrategy;
 import org.nsu.syspro.parprog.interfaces.Fork;
-import org.nsu.syspro.parprog.interfaces.Philosopher;
 
 import java.util.concurrent.atomic.AtomicLong;
 
-public class DefaultPhilosopher implements Philosopher {
+public class DefaultPhilosopher extends SeatedPhilosopher {
 
     private static final AtomicLong idProvider = new AtomicLong(0);
+    private static final DiningStrategy ordering = new ResourceOrderingStrategy();
     public final long id;
-    private long successfulMeals;
 
     public DefaultPhilosopher() {
         this.id = idProvider.getAndAdd(1);
-        this.successfulMeals = 0;
     }
 
-    @Override
-    public long meals() {
-        return successfulMeals;
+    public void onHungry(Fork left, Fork right) {
+        ordering.onHungry(this, left, right);
     }
 
+    /**
+     * Fork order only matters to philosophers which wait: one attempt cannot deadlock.
+     */
     @Override
-    public void countMeal() {
-        successfulMeals++;
-    }
-
-    public void onHungry(Fork left, Fork right) {
-        // TODO: implement me properly
-        eat(left, right);
+    public boolean tryOnHungry(Fork left, Fork right) {
+        return tryEat(left, right);
     }
 
     @Override
@@ -0,0 +1,79 @@
+package org.nsu.syspro.parprog.examples;
+
+import org.nsu.syspro.parprog.interfaces.DiningStrategy;
+import org.nsu.syspro.parprog.interfaces.Fork;
+import org.nsu.syspro.parprog.interfaces.Philosopher;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorator which bounds the unfairness of any strategy: a philosopher which has eaten more than {@code slack} meals
+ * above one of its neighbours yields the processor until the neighbour catches up, and only then lets the delegate get
+ * the forks, so every {@link #onHungry} is still one meal. No global lock: the decision reads two neighbour counters.
+ * When the table {@link #onStop() stops}, neighbours leave and will never catch up, so nobody waits anymore.
+ * <br>
+ * Difference between neighbours stays within {@code slack} (plus the meals eaten concurrently), hence
+ * {@code maxMeals - minMeals <= slack * N / 2}, and the ratio tends to {@code 1} as the dinner goes on. The philosopher
+ * with the fewest meals is never throttled, so the table keeps making progress.
+ * <br>
+ * Weak points: the whole table eats at the pace of its slowest philosopher, which is the price of strong fairness;
+ * meal counters are read racily; a throttled philosopher spins with {@link Thread#yield()} instead of parking.
+ */
+public class FairShareStrategy implements DiningStrategy {
+
+    public static final long DEFAULT_SLACK = 64;
+
+    private final DiningStrategy delegate;
+    private final long slack;
+
+    // written by prepare only, read-only during dinner
+    private final Map<Philosopher, Philosopher[]> neighbours = new IdentityHashMap<>();
+    private volatile boolean stopping;
+
+    public FairShareStrategy(DiningStrategy delegate) {
+        this(delegate, DEFAULT_SLACK);
+    }
+
+    public FairShareStrategy(DiningStrategy delegate, long slack) {
+        if (slack < 1) {
+            throw new IllegalArgumentException("Slack must be positive: " + slack);
+        }
+        this.delegate = delegate;
+        this.slack = slack;
+    }
+
+    @Override
+    public void prepare(List<? extends Philosopher> philosophers, List<? extends Fork> forks) {
+        final int N = philosophers.size();
+        for (int i = 0; i < N; i++) {
+            neighbours.put(philosophers.get(i),
+                    new Philosopher[]{philosophers.get((i + N - 1) % N), philosophers.get((i + 1) % N)});
+        }
+        delegate.prepare(philosophers, forks);
+    }
+
+    @Override
+    public void onHungry(Philosopher philosopher, Fork left, Fork right) {
+        final Philosopher[] n = neighbours.get(philosopher);
+        if (n == null) {
+            throw new IllegalStateException(philosopher + " does not belong to the prepared table");
+        }
+        while (!stopping && philosopher.meals() >= Math.min(n[0].meals(), n[1].meals()) + slack) {
+            Thread.yield();
+        }
+        delegate.onHungry(philosopher, left, right);
+    }
+
+    @Override
+    public void onStop() {
+        stopping = true;
+        delegate.onStop();
+    }
+
+    @Override
+    public String toString() {
+        return "FairShare(" + delegate.getClass().getSimpleName() + ", slack = " + slack + ")";
+    }
+}
@@ -0,0 +1,33 @@
+package org.nsu.syspro.parprog.examples;
+
+import org.nsu.syspro.parprog.interfaces.DiningStrategy;
+import org.nsu.syspro.parprog.interfaces.Fork;
+import org.nsu.syspro.parprog.interfaces.Philosopher;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Try-acquire with randomized backoff: a philosopher {@link Philosopher#tryEat tries} both forks without waiting; if
+ * any of them is taken, it puts back what it has taken and backs off for a random number of spins, the limit doubles
+ * after every failure (up to {@link #MAX_BACKOFF}). Nobody holds a fork while waiting for another one, so there is no
+ * deadlock, and random backoff breaks the symmetry which could make neighbours retry in lockstep forever. Stateless.
+ * <br>
+ * Weak points: no ordering between requesters, fairness is probabilistic; every failed attempt yields the processor.
+ */
+public class RandomizedBackoffStrategy implements DiningStrategy {
+
+    static final int MIN_BACKOFF = 1 << 4;
+    static final int MAX_BACKOFF = 1 << 12;
+
+    @Override
+    public void onHungry(Philosopher philosopher, Fork left, Fork right) {
+        int backoff = MIN_BACKOFF;
+        while (!philosopher.tryEat(left, right)) {
+            for (int i = ThreadLocalRandom.current().nextInt(backoff); i >= 0; i--) {
+                Thread.onSpinWait();
+            }
+            Thread.yield();
+            backoff = Math.min(MAX_BACKOFF, backoff * 2);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.nsu.syspro.parprog.examples;
+
+import org.nsu.syspro.parprog.interfaces.DiningStrategy;
+import org.nsu.syspro.parprog.interfaces.Fork;
+import org.nsu.syspro.parprog.interfaces.Philosopher;
+
+/**
+ * Forks are taken in the global order of {@link Fork#id()}: a cycle of philosophers each waiting for the next one
+ * would need a fork order cycle, so there is no deadlock. Stateless, no locks except the forks themselves.
+ * <br>
+ * Every {@link #YIELD_INTERVAL} meals the philosopher yields the processor. Otherwise, with more philosophers than
+ * cores, a philosopher eats for its whole time slice while the neighbours which were parked on its forks cannot even
+ * wake up to compete.
+ * <br>
+ * Weak points: apart from that, fairness is the fairness of the forks (use {@link FairShareStrategy} for a hard
+ * bound); a philosopher which is preempted while holding its first fork makes the neighbour wait.
+ */
+public class ResourceOrderingStrategy implements DiningStrategy {
+
+    static final int YIELD_INTERVAL = 64;
+
+    @Override
+    public void onHungry(Philosopher philosopher, Fork left, Fork right) {
+        if (left.id() < right.id()) {
+            philosopher.eat(left, right);
+        } else {
+            philosopher.eat(right, left);
+        }
+        if (philosopher.meals() % YIELD_INTERVAL == 0) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.nsu.syspro.parprog.interfaces;
+
+import java.util.List;
+
+/**
+ * How a hungry philosopher gets both forks, see {@code org.nsu.syspro.parprog.examples} for implementations.
+ * <br>
+ * A table constructed with a strategy calls {@link #onHungry} instead of {@link Philosopher#onHungry}. One strategy
+ * instance serves one table: it may keep per-fork state, which is set up by {@link #prepare}.
+ */
+public interface DiningStrategy {
+
+    /**
+     * Called once by the table before dinner: philosopher {@code i} sits between forks {@code i} (left) and
+     * {@code (i + 1) % N} (right).
+     */
+    default void prepare(List<? extends Philosopher> philosophers, List<? extends Fork> forks) {
+    }
+
+    /**
+     * Gets both forks, {@link Philosopher#eat eats} once and puts the forks back.
+     */
+    void onHungry(Philosopher philosopher, Fork left, Fork right);
+
+    /**
+     * Called once by the table when dinner ends, before it waits for the philosophers: from now on philosophers leave
+     * the table one by one, so a strategy must not wait for its neighbours to eat anymore.
+     */
+    default void onStop() {
+    }
+}
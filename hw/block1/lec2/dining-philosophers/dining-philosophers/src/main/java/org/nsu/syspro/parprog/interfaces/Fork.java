@@ -1,9 +1,25 @@
 package org.nsu.syspro.parprog.interfaces;
 
+import java.util.concurrent.TimeUnit;
+
 public interface Fork {
     long id();
 
     void acquire();
 
+    /**
+     * Acquires the fork only if it is free right now, never waits.
+     *
+     * @return {@code true} if the fork was acquired
+     */
+    boolean tryAcquire();
+
+    /**
+     * Acquires the fork if it becomes free within {@code timeout}.
+     *
+     * @return {@code true} if the fork was acquired
+     */
+    boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException;
+
     void release();
 }
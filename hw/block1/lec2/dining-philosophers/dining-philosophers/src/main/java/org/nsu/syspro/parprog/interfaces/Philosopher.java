@@ -18,5 +18,39 @@ public interface Philosopher {
         }
     }
 
+    /**
+     * Eats only if both forks are free right now, never waits.
+     *
+     * @return {@code true} if the meal happened
+     */
+    default boolean tryEat(Fork f1, Fork f2) {
+        if (!f1.tryAcquire()) {
+            return false;
+        }
+        try {
+            if (!f2.tryAcquire()) {
+                return false;
+            }
+            try {
+                countMeal();
+                return true;
+            } finally {
+                f2.release();
+            }
+        } finally {
+            f1.release();
+        }
+    }
+
+    /**
+     * Non-blocking {@link #onHungry}, for callers which must not wait (e.g. a worker pool): one attempt to eat. A
+     * philosopher whose {@link #onHungry} does more than getting both forks has to override this one as well.
+     *
+     * @return {@code true} if the meal happened
+     */
+    default boolean tryOnHungry(Fork left, Fork right) {
+        return tryEat(left, right);
+    }
+
     void onHungry(Fork left, Fork right);
 }
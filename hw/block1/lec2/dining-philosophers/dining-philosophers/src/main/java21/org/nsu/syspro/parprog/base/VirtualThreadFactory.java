@@ -0,0 +1,18 @@
+package org.nsu.syspro.parprog.base;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates a virtual thread per philosopher, see {@link ExecutionMode#VIRTUAL_THREADS}.
+ */
+final class VirtualThreadFactory implements ThreadFactory {
+
+    private final ThreadFactory factory = Thread.ofVirtual()
+            .name("philosopher-", 0)
+            .factory();
+
+    @Override
+    public Thread newThread(Runnable task) {
+        return factory.newThread(task);
+    }
+}
@@ -0,0 +1,108 @@
+package org.nsu.syspro.parprog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.nsu.syspro.parprog.base.DefaultFork;
+import org.nsu.syspro.parprog.base.DiningTable;
+import org.nsu.syspro.parprog.examples.ChandyMisraStrategy;
+import org.nsu.syspro.parprog.examples.DefaultPhilosopher;
+import org.nsu.syspro.parprog.examples.FairShareStrategy;
+import org.nsu.syspro.parprog.examples.RandomizedBackoffStrategy;
+import org.nsu.syspro.parprog.examples.ResourceOrderingStrategy;
+import org.nsu.syspro.parprog.helpers.TestLevels;
+import org.nsu.syspro.parprog.interfaces.DiningStrategy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiningStrategyTest extends TestLevels {
+
+    static final class StrategyTable extends DiningTable<DefaultPhilosopher, DefaultFork> {
+        public StrategyTable(int N, DiningStrategy strategy) {
+            super(N, strategy);
+        }
+
+        @Override
+        public DefaultFork createFork() {
+            return new DefaultFork();
+        }
+
+        @Override
+        public DefaultPhilosopher createPhilosopher() {
+            return new DefaultPhilosopher();
+        }
+    }
+
+    static DiningStrategy createStrategy(String name) {
+        switch (name) {
+            case "ORDERING":
+                return new ResourceOrderingStrategy();
+            case "CHANDY_MISRA":
+                return new ChandyMisraStrategy();
+            case "BACKOFF":
+                return new RandomizedBackoffStrategy();
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    @EnabledIf("mediumEnabled")
+    @ParameterizedTest
+    @CsvSource({"ORDERING, 5", "CHANDY_MISRA, 5", "BACKOFF, 2", "BACKOFF, 5"})
+    @Timeout(4)
+    void testWeakFairness(String strategy, int N) {
+        final StrategyTable table = dine(new StrategyTable(N, createStrategy(strategy)), 1);
+        assertTrue(table.minMeals() > 0);
+    }
+
+    @EnabledIf("mediumEnabled")
+    @ParameterizedTest
+    @CsvSource({"ORDERING, 5", "CHANDY_MISRA, 5", "BACKOFF, 5"})
+    @Timeout(10)
+    void testScalability(String strategy, int N) {
+        final StrategyTable table1 = dine(new StrategyTable(N, new FairShareStrategy(createStrategy(strategy))), 1);
+        final StrategyTable table2 = dine(new StrategyTable(N, new FairShareStrategy(createStrategy(strategy))), 4);
+        assertTrue(2 * table1.maxMeals() < table2.maxMeals());
+    }
+
+    @EnabledIf("hardEnabled")
+    @ParameterizedTest
+    @CsvSource({"ORDERING, 2", "ORDERING, 5", "CHANDY_MISRA, 2", "CHANDY_MISRA, 5", "BACKOFF, 2", "BACKOFF, 5"})
+    @Timeout(4)
+    void testStrongFairness(String strategy, int N) {
+        final StrategyTable table = dine(new StrategyTable(N, new FairShareStrategy(createStrategy(strategy))), 1);
+        final long minMeals = table.minMeals();
+        final long maxMeals = table.maxMeals();
+        assertTrue(maxMeals < 1.5 * minMeals);
+    }
+
+    @Test
+    @Timeout(4)
+    void testFairShareEatsOnEveryTurn() throws InterruptedException {
+        final FairShareStrategy strategy = new FairShareStrategy(new ResourceOrderingStrategy(), 1);
+        final StrategyTable table = new StrategyTable(2, strategy);
+        final DefaultPhilosopher greedy = table.philosopherAt(0);
+        final Runnable greedyTurn = () -> strategy.onHungry(greedy, table.forkAt(0), table.forkAt(1));
+        greedyTurn.run();
+
+        // a meal ahead of the neighbour: the turn waits for it instead of returning hungry
+        final Thread waiting = new Thread(greedyTurn);
+        waiting.start();
+        sleepMillis(50);
+        assertEquals(1, greedy.meals());
+        strategy.onHungry(table.philosopherAt(1), table.forkAt(1), table.forkAt(0));
+        waiting.join();
+        assertEquals(2, greedy.meals());
+
+        // the neighbour has left the table and will never catch up
+        final Thread stopped = new Thread(greedyTurn);
+        stopped.start();
+        sleepMillis(50);
+        strategy.onStop();
+        stopped.join();
+        assertEquals(3, greedy.meals());
+    }
+}
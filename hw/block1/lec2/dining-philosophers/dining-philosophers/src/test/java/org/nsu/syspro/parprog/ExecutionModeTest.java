@@ -0,0 +1,150 @@
+package org.nsu.syspro.parprog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.nsu.syspro.parprog.base.DefaultFork;
+import org.nsu.syspro.parprog.base.DiningTable;
+import org.nsu.syspro.parprog.base.ExecutionMode;
+import org.nsu.syspro.parprog.examples.DefaultPhilosopher;
+import org.nsu.syspro.parprog.examples.ResourceOrderingStrategy;
+import org.nsu.syspro.parprog.helpers.TestLevels;
+import org.nsu.syspro.parprog.interfaces.Fork;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ExecutionModeTest extends TestLevels {
+
+    static class ModeTable extends DiningTable<DefaultPhilosopher, DefaultFork> {
+        ModeTable(int N, ExecutionMode mode) {
+            super(N, null, mode);
+        }
+
+        @Override
+        public DefaultFork createFork() {
+            return new DefaultFork();
+        }
+
+        @Override
+        public DefaultPhilosopher createPhilosopher() {
+            return new DefaultPhilosopher();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionMode.class)
+    @Timeout(10)
+    void testEveryModeFeedsEverybody(ExecutionMode mode) {
+        assumeTrue(mode.isSupported(), mode + " is not supported");
+        final int N = 16;
+        final ModeTable table = dine(new ModeTable(N, mode), 1);
+
+        assertTrue(table.minMeals() > 0);
+        assertThrows(IllegalStateException.class, table::stop);
+        final long total = table.totalMeals();
+        sleepMillis(100);
+        assertEquals(total, table.totalMeals(), "philosophers eat after stop");
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ExecutionMode.class, names = {"VIRTUAL_THREADS", "WORKER_POOL"})
+    @Timeout(60)
+    void testHugeTable(ExecutionMode mode) {
+        assumeTrue(hardEnabled());
+        assumeTrue(mode.isSupported(), mode + " is not supported");
+        final int N = 100_000;
+        final ModeTable table = dine(new ModeTable(N, mode), 3);
+
+        assertTrue(table.totalMeals() >= N, "only " + table.totalMeals() + " meals");
+    }
+
+    @Test
+    @Timeout(10)
+    void testPoolSurvivesFailingPhilosopher() {
+        final ModeTable table = new ModeTable(4, ExecutionMode.WORKER_POOL) {
+            private int created;
+
+            @Override
+            public DefaultPhilosopher createPhilosopher() {
+                if (created++ > 0) {
+                    return new DefaultPhilosopher();
+                }
+                return new DefaultPhilosopher() {
+                    @Override
+                    public boolean tryEat(Fork f1, Fork f2) {
+                        throw new ArithmeticException("choked");
+                    }
+                };
+            }
+        };
+        table.start();
+        sleepMillis(200);
+
+        final IllegalStateException e = assertThrows(IllegalStateException.class, table::stop);
+        assertInstanceOf(ArithmeticException.class, e.getCause());
+        assertEquals(0, table.philosopherAt(0).meals());
+        assertTrue(table.philosopherAt(2).meals() > 0);
+    }
+
+    @Test
+    @Timeout(10)
+    void testPoolCallsNonBlockingHook() {
+        final AtomicLong attempts = new AtomicLong();
+        final ModeTable table = new ModeTable(4, ExecutionMode.WORKER_POOL) {
+            @Override
+            public DefaultPhilosopher createPhilosopher() {
+                return new DefaultPhilosopher() {
+                    @Override
+                    public void onHungry(Fork left, Fork right) {
+                        throw new AssertionError("blocking hook in " + ExecutionMode.WORKER_POOL);
+                    }
+
+                    @Override
+                    public boolean tryOnHungry(Fork left, Fork right) {
+                        attempts.incrementAndGet();
+                        return super.tryOnHungry(left, right);
+                    }
+                };
+            }
+        };
+        dine(table, 1);
+
+        assertTrue(table.minMeals() > 0);
+        assertTrue(attempts.get() >= table.totalMeals());
+    }
+
+    @Test
+    void testPoolRejectsBlockingOnlyPhilosophers() {
+        assertThrows(IllegalArgumentException.class, () -> new ModeTable(4, ExecutionMode.WORKER_POOL) {
+            @Override
+            public DefaultPhilosopher createPhilosopher() {
+                return new DefaultPhilosopher() {
+                    @Override
+                    public void onHungry(Fork left, Fork right) {
+                        super.onHungry(right, left);
+                    }
+                };
+            }
+        });
+    }
+
+    @Test
+    void testPoolRejectsStrategies() {
+        assertThrows(IllegalArgumentException.class, () -> new DiningTable<DefaultPhilosopher, DefaultFork>(
+                4, new ResourceOrderingStrategy(), ExecutionMode.WORKER_POOL) {
+            @Override
+            public DefaultFork createFork() {
+                return new DefaultFork();
+            }
+
+            @Override
+            public DefaultPhilosopher createPhilosopher() {
+                return new DefaultPhilosopher();
+            }
+        });
+    }
+}
@@ -0,0 +1,106 @@
+package org.nsu.syspro.parprog;
+
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.nsu.syspro.parprog.base.*;
+import org.nsu.syspro.parprog.interfaces.Fork;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForkTest {
+
+    static Fork createFork(String kind) {
+        switch (kind) {
+            case "DEFAULT":
+                return new DefaultFork();
+            case "TAS":
+                return new TasFork();
+            case "TTAS":
+                return new TtasFork();
+            case "CLH":
+                return new ClhFork();
+            case "MCS":
+                return new McsFork();
+            default:
+                throw new IllegalArgumentException(kind);
+        }
+    }
+
+    private long counter; // guarded by the fork
+
+    @ParameterizedTest
+    @ValueSource(strings = {"TAS", "TTAS", "CLH", "MCS"})
+    @Timeout(10)
+    void testMutualExclusion(String kind) throws InterruptedException {
+        final Fork fork = createFork(kind);
+        final int N = 8;
+        final int ITERATIONS = 50_000;
+        counter = 0;
+
+        final ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < N; i++) {
+            final Thread t = new Thread(() -> {
+                for (int j = 0; j < ITERATIONS; j++) {
+                    fork.acquire();
+                    try {
+                        counter++;
+                    } finally {
+                        fork.release();
+                    }
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals((long) N * ITERATIONS, counter);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"DEFAULT", "TAS", "TTAS", "CLH", "MCS"})
+    @Timeout(5)
+    void testTryAcquire(String kind) throws InterruptedException {
+        final Fork fork = createFork(kind);
+        assertTrue(fork.tryAcquire());
+
+        final AtomicBoolean busy = new AtomicBoolean();
+        final AtomicBoolean busyTimed = new AtomicBoolean();
+        final Thread other = new Thread(() -> {
+            busy.set(!fork.tryAcquire());
+            try {
+                busyTimed.set(!fork.tryAcquire(10, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        other.start();
+        other.join();
+        assertTrue(busy.get());
+        assertTrue(busyTimed.get());
+
+        final AtomicBoolean acquired = new AtomicBoolean();
+        final Thread waiter = new Thread(() -> {
+            try {
+                acquired.set(fork.tryAcquire(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            fork.release();
+        });
+        waiter.start();
+        fork.release();
+        waiter.join();
+        assertTrue(acquired.get());
+
+        fork.acquire();
+        fork.release();
+    }
+}
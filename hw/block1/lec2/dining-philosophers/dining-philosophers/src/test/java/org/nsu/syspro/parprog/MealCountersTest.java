@@ -0,0 +1,121 @@
+package org.nsu.syspro.parprog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.nsu.syspro.parprog.base.DefaultFork;
+import org.nsu.syspro.parprog.base.DiningTable;
+import org.nsu.syspro.parprog.base.MealCounters;
+import org.nsu.syspro.parprog.examples.DefaultPhilosopher;
+import org.nsu.syspro.parprog.helpers.TestLevels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LongSummaryStatistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MealCountersTest extends TestLevels {
+
+    static class PlainTable extends DiningTable<DefaultPhilosopher, DefaultFork> {
+        PlainTable(int N) {
+            super(N);
+        }
+
+        @Override
+        public DefaultFork createFork() {
+            return new DefaultFork();
+        }
+
+        @Override
+        public DefaultPhilosopher createPhilosopher() {
+            return new DefaultPhilosopher();
+        }
+    }
+
+    static final class UnseatedPhilosopher extends DefaultPhilosopher {
+        @Override
+        protected void seat(MealCounters counters, int index) {
+        }
+    }
+
+    static final class MixedTable extends PlainTable {
+        private int created;
+
+        MixedTable(int N) {
+            super(N);
+        }
+
+        @Override
+        public DefaultPhilosopher createPhilosopher() {
+            return (created++ % 2 == 0) ? new DefaultPhilosopher() : new UnseatedPhilosopher();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void testNeighboursDoNotInterfere() throws InterruptedException {
+        final int N = 4;
+        final int ITERATIONS = 100_000;
+        final MealCounters counters = new MealCounters(N);
+
+        final ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < N; i++) {
+            final int index = i;
+            final Thread t = new Thread(() -> {
+                for (int j = 0; j < ITERATIONS * (index + 1); j++) {
+                    counters.increment(index);
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        long last = 0;
+        while (threads.get(0).isAlive()) {
+            final long seen = counters.get(0);
+            assertTrue(seen >= last, "counter went back from " + last + " to " + seen);
+            last = seen;
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        final long[] snapshot = counters.snapshot();
+        for (int i = 0; i < N; i++) {
+            assertEquals((long) ITERATIONS * (i + 1), snapshot[i]);
+            assertEquals(snapshot[i], counters.get(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> counters.get(N));
+    }
+
+    @Test
+    @Timeout(10)
+    void testTableCountsInItsCounters() {
+        final int N = 5;
+        final PlainTable table = dine(new PlainTable(N), 1);
+
+        final long[] snapshot = table.mealsSnapshot();
+        for (int i = 0; i < N; i++) {
+            assertTrue(snapshot[i] > 0);
+            assertEquals(snapshot[i], table.philosopherAt(i).meals());
+        }
+        assertEquals(Arrays.stream(snapshot).sum(), table.totalMeals());
+        assertEquals(Arrays.stream(snapshot).max().getAsLong(), table.maxMeals());
+        assertEquals(Arrays.stream(snapshot).min().getAsLong(), table.minMeals());
+    }
+
+    @Test
+    @Timeout(10)
+    void testSnapshotIncludesPhilosophersCountingThemselves() {
+        final int N = 4;
+        final MixedTable table = dine(new MixedTable(N), 1);
+
+        final long[] snapshot = table.mealsSnapshot();
+        for (int i = 0; i < N; i++) {
+            assertTrue(snapshot[i] > 0);
+            assertEquals(snapshot[i], table.philosopherAt(i).meals());
+        }
+        final LongSummaryStatistics statistics = table.mealStatistics();
+        assertEquals(Arrays.stream(snapshot).sum(), statistics.getSum());
+        assertEquals(N, statistics.getCount());
+    }
+}